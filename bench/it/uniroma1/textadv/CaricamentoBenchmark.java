@@ -0,0 +1,34 @@
+package it.uniroma1.textadv;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark del caricamento dei mondi del progetto con Mondo.fromFile.
+ * 
+ * @author Valerio Mesiti
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaricamentoBenchmark {
+
+	@Param({"minizak", "minizak_18", "TwilightTown"})
+	public String mondo;
+	
+	@Benchmark
+	public Mondo fromFile() throws Exception { return Mondo.fromFile(mondo+".game"); }
+}
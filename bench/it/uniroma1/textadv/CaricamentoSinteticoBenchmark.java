@@ -0,0 +1,68 @@
+package it.uniroma1.textadv;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark del caricamento di mondi generati di dimensione crescente,
+ * dal file .game, dal formato binario precompilato e come modello condiviso tra le partite.
+ * 
+ * @author Valerio Mesiti
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaricamentoSinteticoBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int stanze;
+	
+	private Path game;
+	private Path copione;
+	private Path snapshot;
+	
+	@Setup(Level.Trial)
+	public void prepara() throws Exception
+	{
+		game = Files.createTempFile("sintetico", ".game");
+		copione = Files.createTempFile("sintetico", ".ff");
+		snapshot = Files.createTempFile("sintetico", ".zak");
+		new Generatore(stanze, 2, 4, 2).scrivi(game, copione);
+		Snapshot.compila(game, snapshot);
+	}
+	
+	@TearDown(Level.Trial)
+	public void pulisci() throws Exception
+	{
+		Files.deleteIfExists(game);
+		Files.deleteIfExists(copione);
+		Files.deleteIfExists(snapshot);
+	}
+	
+	@Benchmark
+	public Mondo fromFile() throws Exception { return Mondo.fromFile(game.toString()); }
+	
+	@Benchmark
+	public Mondo fromSnapshot() throws Exception { return Mondo.fromSnapshot(snapshot); }
+	
+	@Benchmark
+	public ModelloMondo modello() throws Exception { return ModelloMondo.fromFile(game); }
+}
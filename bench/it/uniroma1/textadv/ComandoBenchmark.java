@@ -0,0 +1,55 @@
+package it.uniroma1.textadv;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark di un comando (tokenizzazione, risoluzione dei nomi ed esecuzione del verbo) nella stanza iniziale di minizak.
+ * I comandi scelti non cambiano lo stato del mondo, cosi ogni invocazione misura lo stesso lavoro.
+ * Con metriche=true lo stesso comando viene misurato con le {@link Metriche} attive, per vederne il costo.
+ * 
+ * @author Valerio Mesiti
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComandoBenchmark {
+
+	@Param({"guarda", "guarda la scrivania", "apri botola", "vai n", "inventario", "comandi", "accarezza bob", "salta"})
+	public String comando;
+	
+	@Param({"false", "true"})
+	public boolean metriche;
+	
+	private Gioco gioco;
+	private Mondo mondo;
+	
+	@Setup(Level.Trial)
+	public void prepara() throws Exception
+	{
+		if(metriche) Metriche.attiva();
+		else Metriche.disattiva();
+		gioco = new Gioco();
+		mondo = ModelloMondo.fromFile(Path.of("minizak.game")).nuovaPartita();
+		mondo.setOutput(Uscita.NULLA);
+	}
+	
+	@Benchmark
+	public String esegui() { return gioco.leggiComando(comando, mondo); }
+}
@@ -0,0 +1,52 @@
+package it.uniroma1.textadv;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark della riproduzione completa di un file .ff su una nuova partita, con l'output scartato.
+ * 
+ * @author Valerio Mesiti
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplicaBenchmark {
+
+	@Param({"minizak", "minizak_18", "TwilightTown"})
+	public String mondo;
+	
+	private ModelloMondo modello;
+	private Path copione;
+	
+	@Setup(Level.Trial)
+	public void prepara() throws Exception
+	{
+		modello = ModelloMondo.fromFile(Path.of(mondo+".game"));
+		copione = Path.of(mondo+".ff");
+	}
+	
+	@Benchmark
+	public int replica() throws Exception
+	{
+		Mondo m = modello.nuovaPartita();
+		m.setOutput(Uscita.NULLA);
+		return new Gioco().play(m, copione);
+	}
+}
@@ -0,0 +1,58 @@
+package it.uniroma1.textadv;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark del salvataggio e del ripristino di una partita giocata fino a met del suo file .ff.
+ * 
+ * @author Valerio Mesiti
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SalvataggioBenchmark {
+
+	@Param({"minizak", "TwilightTown"})
+	public String mondo;
+	
+	private ModelloMondo modello;
+	private Mondo partita;
+	private byte[] salvataggio;
+	
+	@Setup(Level.Trial)
+	public void prepara() throws Exception
+	{
+		modello = ModelloMondo.fromFile(Path.of(mondo+".game"));
+		partita = modello.nuovaPartita();
+		partita.setOutput(Uscita.NULLA);
+		List<String> comandi = Files.readAllLines(Path.of(mondo+".ff"));
+		Gioco g = new Gioco();
+		for(String c : comandi.subList(0, comandi.size() / 2)) g.leggiComando(c.split(" // ")[0].toLowerCase(), partita);
+		salvataggio = Salvataggio.salva(partita);
+	}
+	
+	@Benchmark
+	public byte[] salva() { return Salvataggio.salva(partita); }
+	
+	@Benchmark
+	public Mondo ripristina() throws Exception { return Salvataggio.ripristina(modello, salvataggio); }
+}
@@ -0,0 +1,37 @@
+package it.uniroma1.textadv;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmark della tokenizzazione dei comandi.
+ * 
+ * @author Valerio Mesiti
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizzatoreBenchmark {
+
+	@Param({"guarda", "vai n", "prendi la chiave dalla scrivania", "apri la porta ripostiglio con la chiave", "dai neo a guardiano del tesoro"})
+	public String comando;
+	
+	private final Tokenizzatore tokenizzatore = new Tokenizzatore(List.of("guarda", "vai", "prendi", "apri", "dai", "n", "s", "e", "o"));
+	
+	@Benchmark
+	public int tokenizza() { return tokenizzatore.tokenizza(comando); }
+}
@@ -0,0 +1,418 @@
+package it.uniroma1.textadv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma1.textadv.DefinizioneMondo.DefinizioneStanza;
+
+/*
+ * Classe che conserva gli elementi di un mondo per colonne, invece che come un oggetto Java per elemento,
+ * cosi un mondo molto grande occupa pochi array di interi e si scorre leggendo memoria contigua.
+ * Tutte le stringhe del mondo (nomi, parametri, descrizioni) stanno una sola volta in una tabella e le colonne ne tengono il numero.
+ * Stanze, oggetti, personaggi e link sono numerati nell'ordine della definizione, come nello {@link StatoMondo} e nel {@link Grafo};
+ * per ogni tipo di elemento ci sono le colonne del nome, della chiave di ricerca (il nome in minuscolo), del tipo e dei parametri,
+ * e un indice ad indirizzamento aperto dalla chiave al numero del primo elemento con quel nome.
+ * Le stanze hanno invece le colonne della descrizione, del contenuto e delle uscite,
+ * e per oggetti e personaggi una colonna dice in quale stanza si trovano all'inizio.
+ * L'archivio  immutabile: gli elementi di una partita vengono istanziati dalle sue colonne solo quando servono, vedi {@link ModelloMondo}.
+ *
+ * @author Valerio Mesiti
+ */
+final class Archivio {
+
+	/*
+	 * Valore delle colonne e delle ricerche per un elemento che non c'.
+	 */
+	static final int NESSUNO = -1;
+
+	private static final int DIREZIONI = Direzione.values().length;
+
+	private String[] testi = new String[1024];
+	private int numeroTesti;
+	private int[] tabellaTesti = new int[2048];
+
+	private final Tabella<Oggetto> oggetti = new Tabella<>();
+	private final Tabella<Character> personaggi = new Tabella<>();
+	private final Tabella<Link> links = new Tabella<>();
+
+	private final int numeroStanze;
+	private final int[] nomiStanze;
+	private final int[] chiaviStanze;
+	private final int[] descrizioni;
+	private final int[] inizioOggetti;
+	private final int[] contenutoOggetti;
+	private final int[] inizioPersonaggi;
+	private final int[] contenutoPersonaggi;
+	private final int[] uscite;
+	private final int[] indiceStanze;
+	private final int[] stanzaOggetti;
+	private final int[] stanzaPersonaggi;
+	private final int[] utensili;
+
+	/*
+	 * Costruttore: copia la definizione nelle colonne e risolve le fabbriche di tutti i tipi usati,
+	 * cosi eventuali tipi sconosciuti vengono segnalati subito.
+	 *
+	 * @param	d	la definizione del mondo
+	 */
+	Archivio(DefinizioneMondo d) throws ClassNotFoundException, NoSuchMethodException
+	{
+		for(String[] riga : d.getLinks()) links.aggiungi(riga, RegistroTipi.fabbricaLink(riga[1]), this);
+		for(String[] riga : d.getOggetti()) oggetti.aggiungi(riga, RegistroTipi.fabbricaOggetto(riga[1], Math.min(riga.length - 2, 1)), this);
+		for(String[] riga : d.getPersonaggi()) personaggi.aggiungi(riga, RegistroTipi.fabbricaPersonaggio(riga[1], riga.length - 2), this);
+		oggetti.chiudi();
+		personaggi.chiudi();
+		links.chiudi();
+
+		utensili = new int[links.numero];
+		Arrays.fill(utensili, NESSUNO);
+		for(int o = 0; o < oggetti.numero; o++)
+		{
+			if(oggetti.inizio[o + 1] == oggetti.inizio[o]) continue;
+			int l = links.cerca(cercaTesto(chiave(testo(oggetti.parametri[oggetti.inizio[o]]))));
+			if(l != NESSUNO) utensili[l] = oggetti.nomi[o];
+		}
+
+		List<DefinizioneStanza> stanze = d.getStanze();
+		numeroStanze = stanze.size();
+		nomiStanze = new int[numeroStanze];
+		chiaviStanze = new int[numeroStanze];
+		descrizioni = new int[numeroStanze];
+		inizioOggetti = new int[numeroStanze + 1];
+		inizioPersonaggi = new int[numeroStanze + 1];
+		uscite = new int[numeroStanze * DIREZIONI];
+		indiceStanze = new int[capienza(numeroStanze)];
+		stanzaOggetti = new int[oggetti.numero];
+		stanzaPersonaggi = new int[personaggi.numero];
+		Arrays.fill(uscite, NESSUNO);
+		Arrays.fill(stanzaOggetti, NESSUNO);
+		Arrays.fill(stanzaPersonaggi, NESSUNO);
+		int[] contenuto = new int[16], presenti = new int[16];
+		int numeroContenuto = 0, numeroPresenti = 0;
+		for(int s = 0; s < numeroStanze; s++)
+		{
+			DefinizioneStanza stanza = stanze.get(s);
+			nomiStanze[s] = interna(stanza.getNome());
+			chiaviStanze[s] = interna(chiave(stanza.getNome()));
+			descrizioni[s] = (stanza.getDescrizione() == null) ? NESSUNO : interna(stanza.getDescrizione());
+			indicizza(indiceStanze, chiaviStanze, s);
+			for(String nome : stanza.getOggetti())
+			{
+				if(numeroContenuto == contenuto.length) contenuto = Arrays.copyOf(contenuto, contenuto.length * 2);
+				contenuto[numeroContenuto++] = interna(nome);
+				int o = oggetti.cerca(cercaTesto(chiave(nome)));
+				if(o != NESSUNO && stanzaOggetti[o] == NESSUNO) stanzaOggetti[o] = s;
+			}
+			for(String nome : stanza.getPersonaggi())
+			{
+				if(numeroPresenti == presenti.length) presenti = Arrays.copyOf(presenti, presenti.length * 2);
+				presenti[numeroPresenti++] = interna(nome);
+				int p = personaggi.cerca(cercaTesto(chiave(nome)));
+				if(p != NESSUNO && stanzaPersonaggi[p] == NESSUNO) stanzaPersonaggi[p] = s;
+			}
+			inizioOggetti[s + 1] = numeroContenuto;
+			inizioPersonaggi[s + 1] = numeroPresenti;
+			for(Map.Entry<Direzione, String> uscita : stanza.getUscite().entrySet()) uscite[s * DIREZIONI + uscita.getKey().ordinal()] = interna(uscita.getValue());
+		}
+		contenutoOggetti = Arrays.copyOf(contenuto, numeroContenuto);
+		contenutoPersonaggi = Arrays.copyOf(presenti, numeroPresenti);
+		testi = Arrays.copyOf(testi, numeroTesti);
+	}
+
+	/*
+	 * Metodo che restituisce il numero di una stringa nella tabella, aggiungendola se non c' ancora.
+	 * Si usa solo durante la costruzione.
+	 */
+	private int interna(String s)
+	{
+		int maschera = tabellaTesti.length - 1;
+		int i = mescola(s.hashCode()) & maschera;
+		for(int t; (t = tabellaTesti[i] - 1) != NESSUNO; i = (i + 1) & maschera) if(testi[t].equals(s)) return t;
+		if(numeroTesti == testi.length) testi = Arrays.copyOf(testi, testi.length * 2);
+		testi[numeroTesti] = s;
+		tabellaTesti[i] = ++numeroTesti;
+		if(numeroTesti * 2 > tabellaTesti.length) ricalcolaTesti();
+		return numeroTesti - 1;
+	}
+
+	/*
+	 * Metodo che raddoppia la tabella delle stringhe quando  piena per met.
+	 */
+	private void ricalcolaTesti()
+	{
+		tabellaTesti = new int[tabellaTesti.length * 2];
+		int maschera = tabellaTesti.length - 1;
+		for(int t = 0; t < numeroTesti; t++)
+		{
+			int i = mescola(testi[t].hashCode()) & maschera;
+			while(tabellaTesti[i] != 0) i = (i + 1) & maschera;
+			tabellaTesti[i] = t + 1;
+		}
+	}
+
+	/*
+	 * Metodo che cerca una stringa nella tabella.
+	 *
+	 * @param	s	la stringa da cercare
+	 * @return		il suo numero, {@link #NESSUNO} se nel mondo non c'
+	 */
+	private int cercaTesto(String s)
+	{
+		int maschera = tabellaTesti.length - 1;
+		int i = mescola(s.hashCode()) & maschera;
+		for(int t; (t = tabellaTesti[i] - 1) != NESSUNO; i = (i + 1) & maschera) if(testi[t].equals(s)) return t;
+		return NESSUNO;
+	}
+
+	/*
+	 * Getter di una stringa dal suo numero.
+	 */
+	private String testo(int t) { return (t == NESSUNO) ? null : testi[t]; }
+
+	/*
+	 * Metodo che cerca un elemento per nome (senza distinzione tra maiuscole e minuscole).
+	 *
+	 * @param	nome	il nome dell'elemento
+	 * @return			il numero del primo elemento con quel nome, {@link #NESSUNO} se non c'
+	 */
+	int cercaOggetto(String nome) { return oggetti.cerca(cercaTesto(chiave(nome))); }
+
+	int cercaPersonaggio(String nome) { return personaggi.cerca(cercaTesto(chiave(nome))); }
+
+	int cercaLink(String nome) { return links.cerca(cercaTesto(chiave(nome))); }
+
+	int cercaStanza(String nome) { return cerca(indiceStanze, chiaviStanze, cercaTesto(chiave(nome))); }
+
+	int getNumeroOggetti() { return oggetti.numero; }
+
+	int getNumeroPersonaggi() { return personaggi.numero; }
+
+	int getNumeroLinks() { return links.numero; }
+
+	int getNumeroStanze() { return numeroStanze; }
+
+	String getNomeOggetto(int o) { return testi[oggetti.nomi[o]]; }
+
+	String getNomePersonaggio(int p) { return testi[personaggi.nomi[p]]; }
+
+	String getNomeLink(int l) { return testi[links.nomi[l]]; }
+
+	String getNomeStanza(int s) { return testi[nomiStanze[s]]; }
+
+	/*
+	 * Getter della riga di un elemento come era nella definizione: {nome, tipo, parametri...}.
+	 */
+	String[] getRigaOggetto(int o) { return oggetti.riga(o, this); }
+
+	String[] getRigaPersonaggio(int p) { return personaggi.riga(p, this); }
+
+	String[] getRigaLink(int l) { return links.riga(l, this); }
+
+	/*
+	 * Getter della stanza in cui si trova all'inizio un oggetto, la prima che lo elenca.
+	 *
+	 * @param	o	il numero dell'oggetto
+	 * @return		il numero della stanza, {@link #NESSUNO} se non  in nessuna stanza
+	 */
+	int getStanzaOggetto(int o) { return stanzaOggetti[o]; }
+
+	/*
+	 * Getter della stanza in cui si trova all'inizio un personaggio, la prima che lo elenca.
+	 */
+	int getStanzaPersonaggio(int p) { return stanzaPersonaggi[p]; }
+
+	/*
+	 * Metodo che istanzia un oggetto: come nel caricamento di un mondo, un oggetto riceve al piu un parametro.
+	 */
+	Oggetto creaOggetto(int o) { return oggetti.crea(o, 1, this); }
+
+	Character creaPersonaggio(int p) { return personaggi.crea(p, Integer.MAX_VALUE, this); }
+
+	/*
+	 * Metodo che istanzia un link, con l'utensile che serve ad aprirlo: l'ultimo oggetto che lo nomina come parametro.
+	 */
+	Link creaLink(int l)
+	{
+		Link link = links.crea(l, Integer.MAX_VALUE, this);
+		if(utensili[l] != NESSUNO) link.setUtil(testi[utensili[l]]);
+		return link;
+	}
+
+	/*
+	 * Metodo che ricostruisce la definizione di una stanza dalle colonne.
+	 *
+	 * @param	s	il numero della stanza
+	 * @return		una nuova definizione della stanza
+	 */
+	DefinizioneStanza getStanza(int s)
+	{
+		DefinizioneStanza stanza = new DefinizioneStanza(testi[nomiStanze[s]], s);
+		stanza.setDescrizione(testo(descrizioni[s]));
+		for(int i = inizioOggetti[s]; i < inizioOggetti[s + 1]; i++) stanza.addOggetto(testi[contenutoOggetti[i]]);
+		for(int i = inizioPersonaggi[s]; i < inizioPersonaggi[s + 1]; i++) stanza.addPersonaggio(testi[contenutoPersonaggi[i]]);
+		for(Direzione d : Direzione.values())
+		{
+			int uscita = uscite[s * DIREZIONI + d.ordinal()];
+			if(uscita != NESSUNO) stanza.addUscita(d, testi[uscita]);
+		}
+		return stanza;
+	}
+
+	/*
+	 * Metodo che elenca i nomi degli elementi trovati dalle ricerche: il primo elemento per ogni nome, nell'ordine della definizione.
+	 */
+	List<String> getNomiOggetti() { return oggetti.nomiDistinti(this); }
+
+	List<String> getNomiPersonaggi() { return personaggi.nomiDistinti(this); }
+
+	List<String> getNomiLinks() { return links.nomiDistinti(this); }
+
+	List<String> getNomiStanze()
+	{
+		List<String> nomi = new ArrayList<>();
+		for(int s = 0; s < numeroStanze; s++) if(cerca(indiceStanze, chiaviStanze, chiaviStanze[s]) == s) nomi.add(testi[nomiStanze[s]]);
+		return nomi;
+	}
+
+	/*
+	 * Metodo che restituisce la capienza di un indice ad indirizzamento aperto per un certo numero di elementi:
+	 * una potenza di due almeno doppia, cosi le catene restano corte.
+	 */
+	private static int capienza(int elementi) { return Integer.highestOneBit(Math.max(elementi, 1) * 2 - 1) * 2; }
+
+	/*
+	 * Metodo che aggiunge un elemento all'indice dalla chiave al numero, se non c' gia un elemento con la stessa chiave.
+	 *
+	 * @param	indice	l'indice, con i numeri degli elementi piu uno (zero  una casella vuota)
+	 * @param	chiavi	la colonna delle chiavi
+	 * @param	n		il numero dell'elemento
+	 */
+	private static void indicizza(int[] indice, int[] chiavi, int n)
+	{
+		int maschera = indice.length - 1;
+		int i = mescola(chiavi[n]) & maschera;
+		for(int e; (e = indice[i] - 1) != NESSUNO; i = (i + 1) & maschera) if(chiavi[e] == chiavi[n]) return;
+		indice[i] = n + 1;
+	}
+
+	/*
+	 * Metodo che cerca nell'indice l'elemento con una chiave.
+	 *
+	 * @return	il numero dell'elemento, {@link #NESSUNO} se non c'
+	 */
+	private static int cerca(int[] indice, int[] chiavi, int chiave)
+	{
+		if(chiave == NESSUNO) return NESSUNO;
+		int maschera = indice.length - 1;
+		int i = mescola(chiave) & maschera;
+		for(int e; (e = indice[i] - 1) != NESSUNO; i = (i + 1) & maschera) if(chiavi[e] == chiave) return e;
+		return NESSUNO;
+	}
+
+	/*
+	 * Metodo che mescola i bit di un hash, cosi anche numeri consecutivi si spargono nell'indice.
+	 */
+	private static int mescola(int h) { h *= 0x9E3779B9; return h ^ (h >>> 16); }
+
+	/*
+	 * Metodo che normalizza un nome come fanno gli indici del mondo.
+	 */
+	private static String chiave(String nome) { return nome.toLowerCase(); }
+
+	/*
+	 * Classe annidata che rappresenta le colonne di un tipo di elemento (oggetti, personaggi o link):
+	 * per ogni elemento il nome, la chiave e il tipo, e i parametri di tutti gli elementi uno dopo l'altro,
+	 * con una colonna che dice dove iniziano quelli di ogni elemento. I tipi sono numerati nell'ordine in cui compaiono
+	 * e per ognuno  conservata la fabbrica gia risolta. Un tipo  distinto anche dal numero di parametri della riga,
+	 * perch un tipo trovato tramite reflection ha una fabbrica diversa per ogni costruttore (vedi {@link RegistroTipi}).
+	 *
+	 * @author Valerio Mesiti
+	 */
+	private static class Tabella<T>
+	{
+		private final List<Fabbrica<? extends T>> fabbriche = new ArrayList<>();
+		private final List<String> nomiTipi = new ArrayList<>();
+		private final Map<String, Integer> numeriTipi = new HashMap<>();
+		private int numero;
+		private int[] nomi = new int[16];
+		private int[] chiavi = new int[16];
+		private int[] tipi = new int[16];
+		private int[] inizio = new int[17];
+		private int[] parametri = new int[16];
+		private int[] indice;
+
+		/*
+		 * Metodo che aggiunge un elemento in fondo alle colonne.
+		 *
+		 * @param	riga		la riga della definizione, {nome, tipo, parametri...}
+		 * @param	fabbrica	la fabbrica del tipo
+		 * @param	archivio	l'archivio, per la tabella delle stringhe
+		 */
+		void aggiungi(String[] riga, Fabbrica<? extends T> fabbrica, Archivio archivio)
+		{
+			if(numero == nomi.length)
+			{
+				nomi = Arrays.copyOf(nomi, numero * 2);
+				chiavi = Arrays.copyOf(chiavi, numero * 2);
+				tipi = Arrays.copyOf(tipi, numero * 2);
+				inizio = Arrays.copyOf(inizio, numero * 2 + 1);
+			}
+			nomi[numero] = archivio.interna(riga[0]);
+			chiavi[numero] = archivio.interna(chiave(riga[0]));
+			tipi[numero] = numeriTipi.computeIfAbsent(riga[1] + "/" + (riga.length - 2), tipo -> { fabbriche.add(fabbrica); nomiTipi.add(riga[1]); return nomiTipi.size() - 1; });
+			int p = inizio[numero];
+			if(p + riga.length - 2 > parametri.length) parametri = Arrays.copyOf(parametri, Math.max(parametri.length * 2, p + riga.length));
+			for(int i = 2; i < riga.length; i++) parametri[p++] = archivio.interna(riga[i]);
+			inizio[++numero] = p;
+		}
+
+		/*
+		 * Metodo che chiude le colonne quando sono stati aggiunti tutti gli elementi: le accorcia e costruisce l'indice.
+		 */
+		void chiudi()
+		{
+			nomi = Arrays.copyOf(nomi, numero);
+			chiavi = Arrays.copyOf(chiavi, numero);
+			tipi = Arrays.copyOf(tipi, numero);
+			inizio = Arrays.copyOf(inizio, numero + 1);
+			parametri = Arrays.copyOf(parametri, inizio[numero]);
+			indice = new int[capienza(numero)];
+			for(int n = 0; n < numero; n++) indicizza(indice, chiavi, n);
+		}
+
+		int cerca(int chiave) { return Archivio.cerca(indice, chiavi, chiave); }
+
+		/*
+		 * Metodo che istanzia un elemento con la fabbrica del suo tipo.
+		 *
+		 * @param	n			il numero dell'elemento
+		 * @param	massimo		il numero massimo di parametri da passare alla fabbrica
+		 * @param	archivio	l'archivio, per la tabella delle stringhe
+		 */
+		T crea(int n, int massimo, Archivio archivio)
+		{
+			String[] p = new String[Math.min(inizio[n + 1] - inizio[n], massimo)];
+			for(int i = 0; i < p.length; i++) p[i] = archivio.testi[parametri[inizio[n] + i]];
+			return fabbriche.get(tipi[n]).crea(archivio.testi[nomi[n]], p);
+		}
+
+		String[] riga(int n, Archivio archivio)
+		{
+			String[] riga = new String[2 + inizio[n + 1] - inizio[n]];
+			riga[0] = archivio.testi[nomi[n]];
+			riga[1] = nomiTipi.get(tipi[n]);
+			for(int i = 2; i < riga.length; i++) riga[i] = archivio.testi[parametri[inizio[n] + i - 2]];
+			return riga;
+		}
+
+		List<String> nomiDistinti(Archivio archivio)
+		{
+			List<String> distinti = new ArrayList<>();
+			for(int n = 0; n < numero; n++) if(cerca(chiavi[n]) == n) distinti.add(archivio.testi[nomi[n]]);
+			return distinti;
+		}
+	}
+}
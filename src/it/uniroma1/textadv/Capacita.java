@@ -0,0 +1,77 @@
+package it.uniroma1.textadv;
+
+/*
+ * Classe che raccoglie le capacit degli elementi del gioco, ognuna un bit di una maschera:
+ * ogni oggetto e ogni personaggio ha la propria maschera, calcolata una sola volta per tipo dalle interfacce che implementa
+ * (es un {@link Inventario} si puo raccogliere, un {@link Container} si puo aprire), a cui alcuni tipi aggiungono i bit del loro ruolo
+ * (il tesoro fa vincere, il venditore e il guardiano custodiscono degli oggetti).
+ * Il motore controlla cosa si puo fare con un elemento con un solo and sulla maschera,
+ * invece di confrontare i nomi delle classi o di provare il cast e aspettare l'eccezione.
+ *
+ * @author Valerio Mesiti
+ */
+public class Capacita {
+
+	/*
+	 * L'elemento si puo mettere nell'inventario, vedi {@link Inventario}.
+	 */
+	public static final int RACCOGLIBILE = 1;
+
+	/*
+	 * L'oggetto si puo aprire, vedi {@link Container}.
+	 */
+	public static final int CONTENITORE = 1 << 1;
+
+	/*
+	 * L'oggetto apre i link, vedi {@link Opener}.
+	 */
+	public static final int APRITORE = 1 << 2;
+
+	/*
+	 * L'oggetto si usa su altri oggetti, vedi {@link Utensile}.
+	 */
+	public static final int UTENSILE = 1 << 3;
+
+	/*
+	 * Il personaggio accetta gli oggetti che gli si danno, vedi {@link Persona}.
+	 */
+	public static final int PERSONA = 1 << 4;
+
+	/*
+	 * Il personaggio custodisce gli oggetti della stanza in cui si trova, vedi {@link Stanza#getPersonaggioChiave()}.
+	 */
+	public static final int CHIAVE = 1 << 5;
+
+	/*
+	 * Raccogliere l'oggetto fa vincere la partita.
+	 */
+	public static final int VITTORIA = 1 << 6;
+
+	private static final ClassValue<Integer> TIPI = new ClassValue<>()
+	{
+		@Override
+		protected Integer computeValue(Class<?> tipo)
+		{
+			int capacita = 0;
+			if(Inventario.class.isAssignableFrom(tipo)) capacita |= RACCOGLIBILE;
+			if(Container.class.isAssignableFrom(tipo)) capacita |= CONTENITORE;
+			if(Opener.class.isAssignableFrom(tipo)) capacita |= APRITORE;
+			if(Utensile.class.isAssignableFrom(tipo)) capacita |= UTENSILE;
+			if(Persona.class.isAssignableFrom(tipo)) capacita |= PERSONA;
+			return capacita;
+		}
+	};
+
+	/*
+	 * Costruttore privato, la classe offre solo metodi statici.
+	 */
+	private Capacita() {}
+
+	/*
+	 * Metodo che restituisce le capacit che un tipo ha per le interfacce che implementa, calcolate alla prima richiesta.
+	 *
+	 * @param	tipo	la classe dell'elemento
+	 * @return			la maschera delle capacit
+	 */
+	public static int di(Class<?> tipo) { return TIPI.get(tipo); }
+}
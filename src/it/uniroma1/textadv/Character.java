@@ -3,7 +3,6 @@ package it.uniroma1.textadv;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
 /*
  * Classe astratta che identifica un personaggio, dotato di un nome, un inventario di oggetti e di una serie di metodi 
@@ -16,6 +15,9 @@ public abstract class Character {
 	private String nome;
 	private List<String> util = new ArrayList<String>();
 	private boolean tranquillo = true;
+	private StatoMondo stato;
+	private int numero = StatoMondo.NESSUNA;
+	private final int capacita = Capacita.di(getClass());
 	
 	/*
 	 * Costruttore 1.
@@ -46,6 +48,11 @@ public abstract class Character {
 	 */
 	public List<String> getInventory() { return util; }
 	
+	/*
+	 * Getter delle capacit di un personaggio, vedi {@link Capacita}
+	 */
+	public int getCapacita() { return capacita; }
+	
 	/*
 	 * Getter del nome di un personaggio
 	 */
@@ -54,14 +61,36 @@ public abstract class Character {
 	/*
 	 * Getter dello stato di un personaggio
 	 */
-	public boolean isTranquillo() { return tranquillo; }
+	public boolean isTranquillo() { return (stato == null) ? tranquillo : tranquillo ^ stato.getPersonaggio(numero); }
 	
 	/*
 	 * Setter dello stato di un personaggio
 	 * 
 	 * @param	tranquillo	parametro booleano che rappresenta lo stato del personaggio.
 	 */
-	public void setTranquillo(boolean tranquillo) { this.tranquillo = tranquillo; }
+	public void setTranquillo(boolean tranquillo) 
+	{ 
+		if(stato == null) this.tranquillo = tranquillo;
+		else stato.setPersonaggio(numero, tranquillo != this.tranquillo); 
+	}
+	
+	/*
+	 * Setter dello stato del mondo in cui il personaggio entra: da qui in poi il suo umore  tenuto nello stato.
+	 * 
+	 * @param	stato	lo stato della partita
+	 * @param	numero	il numero del personaggio nello stato
+	 */
+	void setStato(StatoMondo stato, int numero) 
+	{ 
+		tranquillo = isTranquillo();
+		this.stato = stato; 
+		this.numero = numero; 
+	}
+	
+	/*
+	 * Getter del numero del personaggio nello stato del mondo.
+	 */
+	int getNumero() { return numero; }
 	
 	/*
 	 * Metodo che permette al personaggio di dare gli oggetti contenuti nell'suo inventario al giocatore.
@@ -72,10 +101,13 @@ public abstract class Character {
 	{
 		for(String o : getInventory())
 		{
-			Inventario item = (Inventario) m.getPosizione().getItem(o);
+			Oggetto oggetto = m.getPosizione().getItem(o);
+			if(oggetto == null || (oggetto.getCapacita() & Capacita.RACCOGLIBILE) == 0) continue;
+			Inventario item = (Inventario) oggetto;
+			m.getPosizione().removeItem(oggetto);
 			m.getPlayer().addInventory(item);
 			item.setVisibile(false);
-			System.out.println("oggetto "+item.getNome()+" ottenuto!");
+			m.getOutput().println("oggetto "+item.getNome()+" ottenuto!");
 		}
 	}
 	
@@ -104,7 +136,7 @@ public abstract class Character {
 		@Override
 		public String parla(Mondo m) 
 		{
-			System.out.println("Ciao amico voglio farti un regalo, guarda che roba!");
+			m.getOutput().println("Ciao amico voglio farti un regalo, guarda che roba!");
 			prendi(m);
 			return "Alla prossima fratello";
 		}
@@ -128,19 +160,13 @@ public abstract class Character {
 		 */
 		@Override
 		public String parla(Mondo m) {
-			try
-			{
-				if(!m.getPlayer().getItem("spada").equals(null));
-				{
-					System.out.println("Allora combattiamo...");
-					System.out.println("...");
-					System.out.println("...");
-					System.out.println("...");
-					prendi(m);
-					return "Sei forte ragazzo";
-				}
-			}
-			catch(NullPointerException e) { return "Cerchi guai?!?! Vattene, non hai neanche una spada per combattere!"; }
+			if(m.getPlayer().getItem("spada") == null) return "Cerchi guai?!?! Vattene, non hai neanche una spada per combattere!";
+			m.getOutput().println("Allora combattiamo...");
+			m.getOutput().println("...");
+			m.getOutput().println("...");
+			m.getOutput().println("...");
+			prendi(m);
+			return "Sei forte ragazzo";
 		}
 	}
 	
@@ -162,8 +188,7 @@ public abstract class Character {
 		 */
 		@Override
 		public String parla(Mondo m) {
-			Random rand = new Random();
-			switch(rand.nextInt(4))
+			switch(m.casuale(4))
 			{
 				case 0 -> { return "Buona fortuna"; }
 				case 1 -> { return "Buona giornata, spero ti stia divertendo"; }
@@ -210,6 +235,12 @@ public abstract class Character {
 		@Override
 		public String parla(Mondo m) { return (isTranquillo()) ? "grazie per esserti servito!" : "dammi del denaro e in cambio potrai servirti nel mio negozietto!"; }
 		
+		/*
+		 * Guarda {@link #getCapacita()}, il venditore custodisce i suoi prodotti.
+		 */
+		@Override
+		public int getCapacita() { return super.getCapacita() | Capacita.CHIAVE; }
+		
 		/*
 		 * Override del metodo toString.
 		 */
@@ -243,7 +274,7 @@ public abstract class Character {
 			if(getInventory().contains(chiave.getNome())) 
 			{
 				setTranquillo(true);
-				System.out.println("Grazie!"); 
+				m.getOutput().println("Grazie!"); 
 			}
 		}
 		
@@ -252,6 +283,12 @@ public abstract class Character {
 		 */
 		@Override
 		public String parla(Mondo m) { return (isTranquillo()) ? "mmm..." : "non ti permettere di prendere il tesoro!"; }
+		
+		/*
+		 * Guarda {@link #getCapacita()}, il guardiano custodisce il tesoro.
+		 */
+		@Override
+		public int getCapacita() { return super.getCapacita() | Capacita.CHIAVE; }
 	}
 	
 	/*
@@ -0,0 +1,14 @@
+package it.uniroma1.textadv;
+
+import java.util.List;
+
+/*
+ * Interfaccia funzionale che identifica il gestore di un verbo del motore testuale.
+ * Riceve le parole chiave del comando (il verbo  la prima) e il mondo su cui agire.
+ * 
+ * @author Valerio Mesiti
+ */
+public interface Comando 
+{
+	void esegui(List<String> parole, Mondo m);
+}
@@ -0,0 +1,238 @@
+package it.uniroma1.textadv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Classe che rappresenta il contenuto di un file .game cosi come  stato letto, prima di istanziare il mondo:
+ * nome, descrizione, stanza di partenza, giocatore e le righe dei blocchi [objects], [characters], [links] e [room].
+ * Le righe degli elementi sono array di stringhe nella forma {nome, tipo, parametri...};
+ * le stringhe ripetute (nomi usati da piu blocchi) sono condivise.
+ * 
+ * @author Valerio Mesiti
+ */
+public class DefinizioneMondo {
+
+	private String nome = "";
+	private String descrizione;
+	private String start = "";
+	private String giocatore;
+	private List<String[]> oggetti = new ArrayList<>();
+	private List<String[]> personaggi = new ArrayList<>();
+	private List<String[]> links = new ArrayList<>();
+	private List<DefinizioneStanza> stanze = new ArrayList<>();
+	private Map<String, String> stringhe = new HashMap<>();
+	
+	/*
+	 * Costruttore con visibilita di package, usato dai lettori dei vari formati.
+	 */
+	DefinizioneMondo() {}
+	
+	/*
+	 * Metodo che legge il file .game specificato in input.
+	 * Il file viene letto una riga alla volta in un'unica passata e ogni riga viene assegnata al blocco
+	 * indicato dall'ultima etichetta incontrata, cosi che l'ordine dei blocchi nel file non abbia importanza.
+	 * 
+	 * @param	fileName	il path del file contenente il mondo di gioco.
+	 * @return				la definizione del mondo
+	 */
+	public static DefinizioneMondo fromFile(Path fileName) throws IOException
+	{
+		DefinizioneMondo d = new DefinizioneMondo();
+		String titolo = "";
+		DefinizioneStanza stanza = null;
+		
+		try(BufferedReader br = Files.newBufferedReader(fileName))
+		{
+			String riga;
+			while((riga = br.readLine()) != null)
+			{
+				if(riga.isBlank()) continue;
+				if(riga.startsWith("["))
+				{
+					String etichetta = riga.strip();
+					etichetta = etichetta.substring(1, etichetta.endsWith("]") ? etichetta.length()-1 : etichetta.length());
+					int separatore = etichetta.indexOf(':');
+					titolo = (separatore < 0) ? etichetta : etichetta.substring(0, separatore);
+					String nome = (separatore < 0) ? "" : etichetta.substring(separatore+1);
+					
+					if(titolo.equals("world")) d.setNome(nome);
+					else if(titolo.equals("room")) d.addStanza(stanza = new DefinizioneStanza(d.interna(nome)));
+					continue;
+				}
+				
+				switch(titolo) 
+				{
+					case "world": 
+						if(riga.startsWith("description")) d.setDescrizione(riga.replace("description\t", ""));
+						else d.setStart(d.interna(riga.replace("start\t", "")));
+						break;
+					case "characters": d.addPersonaggio(d.formatta(riga)); break;
+					case "links": d.addLink(d.formatta(riga)); break;
+					case "objects": 
+						if(riga.contains("\t// ")) riga = riga.split("\\t// ")[0];
+						d.addOggetto(d.formatta(riga)); 
+						break;
+					case "player": if(d.getGiocatore() == null) d.setGiocatore(riga.split("\t")[0]); break;
+					case "room": d.leggiStanza(stanza, riga); break;
+				}
+			}
+		}
+		return d;
+	}
+	
+	/*
+	 * Metodo che gestisce una riga del blocco [room]
+	 * aggiungendo alla stanza in costruzione la descrizione, gli oggetti, i link o i personaggi elencati.
+	 * 
+	 * @param	stanza	la stanza del blocco corrente
+	 * @param	riga	una riga del blocco [room]
+	 */
+	private void leggiStanza(DefinizioneStanza stanza, String riga)
+	{
+		if(!riga.contains("\t")) return;
+		String tag = riga.split("\t")[0];
+		String[] valori = riga.split("\t")[1].split(",");
+		
+		switch(tag)
+		{
+			case "description": stanza.setDescrizione(valori[0]); break;
+			case "objects": for (String oggetto : valori) stanza.addOggetto(interna(oggetto.strip())); break;
+			case "characters": for (String personaggio : valori) stanza.addPersonaggio(interna(personaggio.strip())); break;
+			case "links":
+				for (String link : valori) 
+				{
+					String[] g = link.split(":");
+					stanza.addUscita(Direzione.valueOf(g[0].toLowerCase()), interna(g[1]));
+				}
+				break;
+		}
+	}
+	
+	/*
+	 * Metodo che consente di rimuovere commenti dal file in input (es secchio	Secchio	//	inizialmente vuoto)
+	 * e di dividere la riga nei suoi campi.
+	 */
+	private String[] formatta(String s) 
+	{ 
+		if(s.contains(" // ")) s = s.split(" // ")[0]; 
+		String[] campi = s.split("\t");
+		for(int i = 0; i < campi.length; i++) campi[i] = interna(campi[i]);
+		return campi;
+	}
+	
+	/*
+	 * Metodo che restituisce l'unica copia di una stringa gia incontrata nel file, cosi che i nomi
+	 * ripetuti in piu blocchi occupino memoria una volta sola.
+	 * 
+	 * @param	s	la stringa letta
+	 * @return		la copia condivisa della stringa
+	 */
+	String interna(String s) 
+	{ 
+		String condivisa = stringhe.putIfAbsent(s, s);
+		return (condivisa == null) ? s : condivisa;
+	}
+	
+	//Getter e setter
+	public String getNome() { return nome; }
+	
+	public String getDescrizione() { return descrizione; }
+	
+	public String getStart() { return start; }
+	
+	public String getGiocatore() { return giocatore; }
+	
+	public List<String[]> getOggetti() { return Collections.unmodifiableList(oggetti); }
+	
+	public List<String[]> getPersonaggi() { return Collections.unmodifiableList(personaggi); }
+	
+	public List<String[]> getLinks() { return Collections.unmodifiableList(links); }
+	
+	public List<DefinizioneStanza> getStanze() { return Collections.unmodifiableList(stanze); }
+	
+	void setNome(String nome) { this.nome = nome; }
+	
+	void setDescrizione(String descrizione) { this.descrizione = descrizione; }
+	
+	void setStart(String start) { this.start = start; }
+	
+	void setGiocatore(String giocatore) { this.giocatore = giocatore; }
+	
+	void addOggetto(String[] riga) { oggetti.add(riga); }
+	
+	void addPersonaggio(String[] riga) { personaggi.add(riga); }
+	
+	void addLink(String[] riga) { links.add(riga); }
+	
+	void addStanza(DefinizioneStanza stanza) { stanza.id = stanze.size(); stanze.add(stanza); }
+	
+	/*
+	 * Classe annidata che rappresenta un blocco [room]: 
+	 * il nome, la descrizione e i nomi degli oggetti, dei personaggi e delle uscite che contiene.
+	 * 
+	 * @author Valerio Mesiti
+	 */
+	public static class DefinizioneStanza
+	{
+		private String nome;
+		private int id;
+		private String descrizione;
+		private List<String> oggetti = new ArrayList<>();
+		private List<String> personaggi = new ArrayList<>();
+		private Map<Direzione, String> uscite = new EnumMap<>(Direzione.class);
+		
+		/*
+		 * Costruttore.
+		 * 
+		 * @param	nome	il nome della stanza
+		 */
+		DefinizioneStanza(String nome) { this.nome = nome; }
+		
+		/*
+		 * Costruttore di una stanza gia numerata, usato per ricostruire le stanze di un {@link Archivio}.
+		 * 
+		 * @param	nome	il nome della stanza
+		 * @param	id		il numero della stanza
+		 */
+		DefinizioneStanza(String nome, int id) { this.nome = nome; this.id = id; }
+		
+		public String getNome() { return nome; }
+		
+		/*
+		 * Getter del numero della stanza, la sua posizione nella definizione.
+		 */
+		int getId() { return id; }
+		
+		public String getDescrizione() { return descrizione; }
+		
+		public List<String> getOggetti() { return Collections.unmodifiableList(oggetti); }
+		
+		public List<String> getPersonaggi() { return Collections.unmodifiableList(personaggi); }
+		
+		public Map<Direzione, String> getUscite() { return Collections.unmodifiableMap(uscite); }
+		
+		void setDescrizione(String descrizione) { this.descrizione = descrizione; }
+		
+		void addOggetto(String oggetto) { oggetti.add(oggetto); }
+		
+		void addPersonaggio(String personaggio) { personaggi.add(personaggio); }
+		
+		void addUscita(Direzione d, String link) { uscite.put(d, link); }
+		
+		/*
+		 * Override del metodo toString.
+		 */
+		@Override
+		public String toString() { return nome+" "+Arrays.asList(oggetti, personaggi, uscite); }
+	}
+}
@@ -0,0 +1,184 @@
+package it.uniroma1.textadv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Classe che registra, in ordine, ogni comando eseguito su un mondo, con dei punti di ripristino ogni tot comandi:
+ * ogni punto  un {@link Salvataggio} della partita (compreso il seme del generatore di numeri casuali) e la posizione nel konami code.
+ * Per ricostruire la partita dopo un certo numero di comandi si ripristina il punto piu vicino che la precede
+ * e si rigiocano solo i comandi successivi, invece di rigiocare tutta la partita dall'inizio.
+ * Poich i personaggi scelgono le risposte dal generatore della partita, la partita ricostruita  identica all'originale, output compreso.
+ * Il diario si collega a un mondo con {@link Mondo#setDiario(Diario)} e si puo salvare su file e rileggere.
+ *
+ * @author Valerio Mesiti
+ */
+public class Diario {
+
+	/*
+	 * Numero di comandi tra due punti di ripristino, se non indicato.
+	 */
+	public static final int INTERVALLO = 64;
+	private static final int MAGICO = 0x5A414B44;
+	private static final int VERSIONE = 1;
+
+	private final int intervallo;
+	private final List<String> comandi = new ArrayList<>();
+	private final List<Punto> punti = new ArrayList<>();
+
+	/*
+	 * Costruttore 1, con un punto di ripristino ogni {@link #INTERVALLO} comandi.
+	 */
+	public Diario() { this(INTERVALLO); }
+
+	/*
+	 * Costruttore 2.
+	 *
+	 * @param	intervallo	il numero di comandi tra due punti di ripristino
+	 */
+	public Diario(int intervallo)
+	{
+		if(intervallo < 1) throw new IllegalArgumentException("intervallo non valido: "+intervallo);
+		this.intervallo = intervallo;
+	}
+
+	/*
+	 * Metodo che fotografa la partita da cui il diario parte, chiamato quando il diario viene collegato a un mondo.
+	 * Un diario gia iniziato ricomincia da capo.
+	 *
+	 * @param	m	il mondo della partita
+	 */
+	void inizia(Mondo m)
+	{
+		comandi.clear();
+		punti.clear();
+		punti.add(new Punto(Salvataggio.salva(m), 0));
+	}
+
+	/*
+	 * Metodo che registra un comando appena eseguito e, ogni {@link #intervallo} comandi, aggiunge un punto di ripristino.
+	 *
+	 * @param	comando	il comando eseguito, come letto dal motore
+	 * @param	m		il mondo della partita
+	 * @param	konami	la posizione nel konami code dopo il comando
+	 */
+	void registra(String comando, Mondo m, int konami)
+	{
+		comandi.add(comando);
+		if(comandi.size() % intervallo == 0) punti.add(new Punto(Salvataggio.salva(m), konami));
+	}
+
+	/*
+	 * Metodo che ricostruisce su una nuova partita del modello la partita dopo i primi comandi del diario.
+	 *
+	 * @param	modello	il modello del mondo su cui  stata giocata la partita
+	 * @param	n		il numero di comandi da cui ricostruire la partita
+	 * @return			il mondo della partita ricostruita, con l'output scartato
+	 */
+	public Mondo ricostruisci(ModelloMondo modello, int n) throws IOException
+	{
+		Mondo m = modello.nuovaPartita();
+		m.setOutput(Uscita.NULLA);
+		ricostruisci(m, new Gioco(), n);
+		return m;
+	}
+
+	/*
+	 * Metodo che ricostruisce la partita dopo i primi comandi del diario, su un mondo appena caricato dallo stesso file .game:
+	 * ripristina il punto piu vicino e rigioca i comandi successivi con il motore dato, scrivendo sull'output del mondo.
+	 *
+	 * @param	m		il mondo, su cui non deve essere stato ancora eseguito nessun comando
+	 * @param	gioco	il motore con cui rigiocare i comandi, che continuer la partita
+	 * @param	n		il numero di comandi da cui ricostruire la partita
+	 */
+	public void ricostruisci(Mondo m, Gioco gioco, int n) throws IOException
+	{
+		if(n < 0 || n > comandi.size()) throw new IndexOutOfBoundsException("il diario ha "+comandi.size()+" comandi, non "+n);
+		if(punti.isEmpty()) throw new IllegalStateException("il diario non  collegato a nessuna partita");
+		int p = Math.min(n / intervallo, punti.size() - 1);
+		Punto punto = punti.get(p);
+		Salvataggio.ripristina(m, punto.partita);
+		gioco.setKonami(punto.konami);
+		for(String comando : comandi.subList(p * intervallo, n)) gioco.leggiComando(comando, m);
+	}
+
+	/*
+	 * Metodo che salva il diario su file: l'intervallo, i comandi e i punti di ripristino.
+	 *
+	 * @param	file	il path del file da scrivere
+	 */
+	public void salva(Path file) throws IOException
+	{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+		{
+			out.writeInt(MAGICO);
+			out.writeInt(VERSIONE);
+			out.writeInt(intervallo);
+			out.writeInt(comandi.size());
+			for(String c : comandi) out.writeUTF(c);
+			out.writeInt(punti.size());
+			for(Punto p : punti)
+			{
+				out.writeInt(p.konami);
+				out.writeInt(p.partita.length);
+				out.write(p.partita);
+			}
+		}
+	}
+
+	/*
+	 * Metodo che legge un diario salvato con {@link #salva(Path)}.
+	 *
+	 * @param	file	il path del diario
+	 * @return			il diario letto
+	 */
+	public static Diario leggi(Path file) throws IOException
+	{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+		{
+			if(in.readInt() != MAGICO || in.readInt() != VERSIONE) throw new IOException("non  un diario valido");
+			Diario d = new Diario(in.readInt());
+			for(int n = in.readInt(); n > 0; n--) d.comandi.add(in.readUTF());
+			for(int n = in.readInt(); n > 0; n--)
+			{
+				int konami = in.readInt();
+				byte[] partita = new byte[in.readInt()];
+				in.readFully(partita);
+				d.punti.add(new Punto(partita, konami));
+			}
+			if(d.punti.size() != d.comandi.size() / d.intervallo + 1) throw new IOException("il diario ha "+d.punti.size()+" punti di ripristino per "+d.comandi.size()+" comandi");
+			return d;
+		}
+	}
+
+	/*
+	 * Getter dei comandi registrati.
+	 */
+	public List<String> getComandi() { return Collections.unmodifiableList(comandi); }
+
+	/*
+	 * Getter del numero di punti di ripristino.
+	 */
+	public int getPunti() { return punti.size(); }
+
+	public int getIntervallo() { return intervallo; }
+
+	/*
+	 * Punto di ripristino: il salvataggio della partita e la posizione nel konami code.
+	 */
+	private static class Punto
+	{
+		private final byte[] partita;
+		private final int konami;
+
+		private Punto(byte[] partita, int konami) { this.partita = partita; this.konami = konami; }
+	}
+}
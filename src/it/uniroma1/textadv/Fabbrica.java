@@ -0,0 +1,12 @@
+package it.uniroma1.textadv;
+
+/*
+ * Interfaccia funzionale che identifica un costruttore di elementi del gioco (oggetti, personaggi o link)
+ * a partire dal nome e dai parametri letti dal file del mondo.
+ * 
+ * @author Valerio Mesiti
+ */
+public interface Fabbrica<T> 
+{
+	T crea(String nome, String... parametri);
+}
@@ -0,0 +1,323 @@
+package it.uniroma1.textadv;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Classe che genera mondi .game sintetici delle dimensioni richieste, insieme al file .ff che li vince,
+ * per provare caricamento, ricerca dei percorsi e riproduzione su mondi grandi.
+ *
+ * Le stanze formano un albero: la stanza i ha come figlie le stanze da ramificazione*i+1 a ramificazione*i+ramificazione,
+ * cosi ogni passaggio viene attraversato alternando i due versi, come richiede il motore.
+ * Il tesoro, protetto dal guardiano, si trova nell'ultima stanza. Lungo il percorso dalla partenza al tesoro ci sono
+ * la navetta, la botola (chiusa da una vite), il treno (serve il biglietto), le porte e il teletrasporto:
+ * la chiave di ogni porta  chiusa in una serie di contenitori (camino, scrivanie, cassetti, armadi e salvadanai)
+ * in una stanza laterale raggiungibile solo dopo aver superato il passaggio precedente.
+ * Nella stanza di partenza si trovano gli attrezzi: martello, soldi (nel salvadanaio) per il venditore del secchio,
+ * il pozzo, l'amico che regala cacciavite e spada, il nemico che lascia il biglietto e il gatto per il guardiano.
+ * Le altre stanze contengono oggetti e personaggi di contorno.
+ *
+ * @author Valerio Mesiti
+ */
+public class Generatore {
+
+	private static final Direzione[] DIREZIONI = { Direzione.n, Direzione.e, Direzione.s, Direzione.o };
+	private static final String[] CONTENITORI = { "Scrivania", "Cassetto", "Armadio", "Salvadanaio" };
+	private static final String[] CONTORNO = { "Spada", "Soldi", "Martello", "Pozzo" };
+
+	private final int stanze;
+	private final int ramificazione;
+	private final int profondita;
+	private int serrature;
+
+	/*
+	 * Per ogni stanza l'indice in DIREZIONI dell'uscita verso la stanza madre (-1 per la partenza).
+	 */
+	private final byte[] ritorno;
+	private final Map<Integer, String> passaggi = new HashMap<>();
+	private final Map<Integer, List<String>> oggetti = new HashMap<>();
+	private final Map<Integer, List<String>> personaggi = new HashMap<>();
+	private final List<String> righeLinks = new ArrayList<>();
+	private final List<String> righeOggetti = new ArrayList<>();
+	private final List<String> righePersonaggi = new ArrayList<>();
+	private final List<String> copione = new ArrayList<>();
+	private int posizione;
+	private int contenitori;
+
+	/*
+	 * Costruttore
+	 *
+	 * @param	stanze			il numero di stanze
+	 * @param	ramificazione	il numero di stanze figlie di ogni stanza (da 1 a 3)
+	 * @param	serrature		il numero di porte lungo il percorso, ridotto se il percorso  troppo corto
+	 * @param	profondita		il numero di contenitori annidati attorno a ogni chiave
+	 */
+	public Generatore(int stanze, int ramificazione, int serrature, int profondita)
+	{
+		if(ramificazione < 1 || ramificazione > 3) throw new IllegalArgumentException("La ramificazione deve essere tra 1 e 3");
+		if(serrature < 1 || profondita < 1) throw new IllegalArgumentException("Servono almeno una porta e un contenitore");
+		this.stanze = stanze;
+		this.ramificazione = ramificazione;
+		this.serrature = serrature;
+		this.profondita = profondita;
+		ritorno = new byte[stanze];
+		ritorno[0] = -1;
+		for(int i = 0; i < stanze; i++)
+		{
+			int k = 0;
+			for(int d = 0; d < DIREZIONI.length && k < ramificazione; d++)
+			{
+				if(d == ritorno[i]) continue;
+				long figlia = (long) ramificazione * i + 1 + k++;
+				if(figlia >= stanze) break;
+				ritorno[(int) figlia] = (byte) ((d + 2) % DIREZIONI.length);
+			}
+		}
+	}
+
+	/*
+	 * Punto d'ingresso del generatore.
+	 *
+	 * @param	args	il nome dei file da scrivere (senza estensione), il numero di stanze e, opzionalmente,
+	 * 					la ramificazione (2), il numero di porte (4) e la profondit dei contenitori (2)
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		Generatore g = new Generatore(Integer.parseInt(args[1]),
+									  (args.length > 2) ? Integer.parseInt(args[2]) : 2,
+									  (args.length > 3) ? Integer.parseInt(args[3]) : 4,
+									  (args.length > 4) ? Integer.parseInt(args[4]) : 2);
+		g.scrivi(Path.of(args[0]+".game"), Path.of(args[0]+".ff"));
+	}
+
+	/*
+	 * Metodo che genera il mondo e lo scrive, insieme al copione che lo vince.
+	 *
+	 * @param	game	il file .game da scrivere
+	 * @param	ff		il file .ff da scrivere
+	 */
+	public void scrivi(Path game, Path ff) throws IOException
+	{
+		genera();
+		try(BufferedWriter w = Files.newBufferedWriter(game))
+		{
+			w.write("[world:Mondo generato]\ndescription\tUn mondo generato di "+stanze+" stanze\nstart\t"+stanza(0)+"\n\n");
+			for(int i = 0; i < stanze; i++) scriviStanza(w, i);
+
+			w.write("[links]\n");
+			for(String riga : righeLinks) w.write(riga+"\n");
+			w.write("\n[objects]\n");
+			for(String riga : righeOggetti) w.write(riga+"\n");
+			for(int i = 1; i < stanze; i++) if(i % 3 == 0) w.write(contorno(i)+"\t"+CONTORNO[i / 3 % CONTORNO.length]+"\n");
+			w.write("\n[characters]\n");
+			for(String riga : righePersonaggi) w.write(riga+"\n");
+			for(int i = 1; i < stanze; i++)
+			{
+				if(i % 7 == 0) w.write("abitante "+i+"\tPersonaggio\n");
+				if(i % 13 == 0) w.write("cane "+i+"\tCane\n");
+			}
+			w.write("\n[player]\nRoxas\tGiocatore\n");
+		}
+		Files.write(ff, copione);
+	}
+
+	/*
+	 * Metodo che scrive il blocco [room] di una stanza.
+	 */
+	private void scriviStanza(BufferedWriter w, int i) throws IOException
+	{
+		List<String> o = new ArrayList<>(oggetti.getOrDefault(i, List.of()));
+		if(i > 0 && i % 3 == 0) o.add(contorno(i));
+		List<String> p = new ArrayList<>(personaggi.getOrDefault(i, List.of()));
+		if(i > 0 && i % 7 == 0) p.add("abitante "+i);
+		if(i > 0 && i % 13 == 0) p.add("cane "+i);
+
+		List<String> uscite = new ArrayList<>();
+		if(i > 0) uscite.add(DIREZIONI[ritorno[i]].name().toUpperCase()+":"+passaggi.getOrDefault(i, stanza(madre(i))));
+		for(long f = (long) ramificazione * i + 1; f <= (long) ramificazione * i + ramificazione && f < stanze; f++)
+			uscite.add(DIREZIONI[andata((int) f)].name().toUpperCase()+":"+passaggi.getOrDefault((int) f, stanza((int) f)));
+
+		w.write("[room:"+stanza(i)+"]\ndescription\tStanza numero "+i+"\n");
+		if(!o.isEmpty()) w.write("objects\t"+String.join(", ", o)+"\n");
+		if(!p.isEmpty()) w.write("characters\t"+String.join(", ", p)+"\n");
+		if(!uscite.isEmpty()) w.write("links\t"+String.join(",", uscite)+"\n");
+		w.write("\n");
+	}
+
+	/*
+	 * Metodo che prepara gli elementi speciali del mondo e scrive il copione che lo vince.
+	 */
+	private void genera()
+	{
+		List<Integer> percorso = new ArrayList<>();
+		for(int i = stanze - 1; i > 0; i = madre(i)) percorso.add(i);
+		percorso.add(0);
+		Collections.reverse(percorso);
+		int passi = percorso.size() - 1;
+		if(passi < 5) throw new IllegalArgumentException("Il percorso fino al tesoro  troppo corto: servono piu stanze o meno ramificazione");
+		serrature = Math.min(serrature, passi - 4);
+
+		List<String> speciali = new ArrayList<>(List.of("navetta", "botola", "treno"));
+		for(int k = 1; k <= serrature; k++) speciali.add("porta "+k);
+		speciali.add("teletrasporto");
+
+		partenza();
+		int inizio = 0;
+		for(int s = 0; s < speciali.size(); s++)
+		{
+			int arco = s * passi / speciali.size();
+			int madre = percorso.get(arco), figlia = percorso.get(arco + 1);
+			String nome = speciali.get(s);
+			passaggi.put(figlia, nome);
+			String tipo = nome.startsWith("porta") ? "Porta" : switch(nome) { case "navetta" -> "Bus"; case "botola" -> "Botola"; case "treno" -> "Treno"; default -> "Teletrasporto"; };
+			righeLinks.add(nome+"\t"+tipo+"\t"+stanza(madre)+"\t"+stanza(figlia));
+
+			switch(tipo)
+			{
+				case "Botola":
+					righeOggetti.add("vite\tVite\tbotola");
+					aggiungi(oggetti, madre, "vite");
+					vai(madre);
+					copione.add("usa cacciavite su vite");
+					copione.add("apri botola");
+					break;
+				case "Treno":
+					vai(madre);
+					copione.add("usa biglietto su treno");
+					break;
+				case "Porta":
+					int k = Integer.parseInt(nome.substring(6));
+					chiave(k, laterale(percorso.get(inizio), percorso.get(inizio + 1)));
+					vai(madre);
+					copione.add("apri "+nome+" con chiave "+k);
+					break;
+			}
+			inizio = arco + 1;
+		}
+
+		int tesoro = stanze - 1;
+		righeOggetti.add("tesoro\tTesoro");
+		righePersonaggi.add("guardiano\tGuardiano\ttesoro\tgatto");
+		aggiungi(oggetti, tesoro, "tesoro");
+		aggiungi(personaggi, tesoro, "guardiano");
+		vai(tesoro);
+		copione.add("dai gatto a guardiano");
+		copione.add("prendi tesoro");
+	}
+
+	/*
+	 * Metodo che prepara la stanza di partenza con gli attrezzi e il copione per raccoglierli.
+	 */
+	private void partenza()
+	{
+		righeOggetti.addAll(List.of("martello\tMartello", "salvadanaio\tSalvadanaio\tsoldi", "soldi\tSoldi", "pozzo\tPozzo", "secchio\tSecchio",
+									"cacciavite\tCacciavite", "spada\tSpada", "biglietto\tChiave\ttreno"));
+		righePersonaggi.addAll(List.of("venditore\tVenditore\tsecchio", "amico\tAmico\tcacciavite\tspada", "nemico\tNemico\tbiglietto", "gatto\tGatto"));
+		for(String o : List.of("martello", "salvadanaio", "pozzo", "secchio", "cacciavite", "spada", "biglietto")) aggiungi(oggetti, 0, o);
+		for(String p : List.of("venditore", "amico", "nemico", "gatto")) aggiungi(personaggi, 0, p);
+		copione.addAll(List.of("prendi martello", "rompi salvadanaio con martello", "prendi soldi", "dai soldi al venditore", "usa secchio su pozzo",
+							   "parla con amico", "parla con nemico", "prendi gatto"));
+	}
+
+	/*
+	 * Metodo che chiude la chiave di una porta in una serie di contenitori nella stanza indicata
+	 * e scrive nel copione i comandi per raggiungerla, aprire i contenitori e prenderla.
+	 * Il primo contenitore della prima porta  il camino, da spegnere con il secchio riempito al pozzo.
+	 *
+	 * @param	k		il numero della porta
+	 * @param	stanza	la stanza in cui mettere i contenitori
+	 */
+	private void chiave(int k, int stanza)
+	{
+		String contenuto = "chiave "+k;
+		righeOggetti.add(contenuto+"\tChiave\tporta "+k);
+		List<String> nomi = new ArrayList<>(), tipi = new ArrayList<>();
+		for(int d = 0; d < profondita; d++)
+		{
+			String tipo = (k == 1 && d == 0) ? "Camino" : CONTENITORI[contenitori++ % CONTENITORI.length];
+			nomi.add(tipo.equals("Camino") ? "camino" : tipo.toLowerCase()+" "+contenitori);
+			tipi.add(tipo);
+		}
+		for(int d = profondita - 1; d >= 0; d--)
+		{
+			righeOggetti.add(nomi.get(d)+"\t"+tipi.get(d)+"\t"+contenuto);
+			contenuto = nomi.get(d);
+		}
+		aggiungi(oggetti, stanza, nomi.get(0));
+
+		vai(stanza);
+		for(int d = 0; d < profondita; d++)
+		{
+			String nome = nomi.get(d);
+			switch(tipi.get(d))
+			{
+				case "Camino": copione.add("usa secchio su camino"); break;
+				case "Salvadanaio": copione.add("rompi "+nome+" con martello"); break;
+				case "Armadio":
+					String tronchesi = "tronchesi "+nome.substring(8);
+					righeOggetti.add(tronchesi+"\tTronchesi\t"+nome);
+					aggiungi(oggetti, stanza, tronchesi);
+					copione.add("prendi "+tronchesi);
+					copione.add("usa "+tronchesi+" su "+nome);
+					break;
+				default: copione.add("apri "+nome);
+			}
+		}
+		copione.add("prendi chiave "+k);
+	}
+
+	/*
+	 * Metodo che sceglie la stanza laterale in cui nascondere una chiave: partendo da una stanza del percorso
+	 * scende in una figlia che non  sul percorso e poi sempre nella prima figlia fino in fondo all'albero.
+	 * Se la stanza non ha figlie fuori dal percorso la chiave resta nella stanza stessa.
+	 *
+	 * @param	stanza		la stanza del percorso
+	 * @param	successiva	la stanza seguente sul percorso
+	 * @return				la stanza in cui nascondere la chiave
+	 */
+	private int laterale(int stanza, int successiva)
+	{
+		long f = (long) ramificazione * stanza + 1;
+		if(f == successiva) f++;
+		if(f >= stanze || f > (long) ramificazione * stanza + ramificazione) return stanza;
+		while((long) ramificazione * f + 1 < stanze) f = (long) ramificazione * f + 1;
+		return (int) f;
+	}
+
+	/*
+	 * Metodo che scrive nel copione i comandi per andare dalla posizione attuale alla stanza indicata:
+	 * si risale fino all'antenato comune e poi si scende. Le stanze madri hanno sempre un numero minore delle figlie.
+	 *
+	 * @param	destinazione	la stanza da raggiungere
+	 */
+	private void vai(int destinazione)
+	{
+		List<String> discesa = new ArrayList<>();
+		int a = posizione, b = destinazione;
+		while(a != b)
+		{
+			if(a > b) { copione.add("vai "+DIREZIONI[ritorno[a]]); a = madre(a); }
+			else { discesa.add("vai "+DIREZIONI[andata(b)]); b = madre(b); }
+		}
+		Collections.reverse(discesa);
+		copione.addAll(discesa);
+		posizione = destinazione;
+	}
+
+	private int madre(int i) { return (i - 1) / ramificazione; }
+
+	private int andata(int i) { return (ritorno[i] + 2) % DIREZIONI.length; }
+
+	private static String stanza(int i) { return "stanza "+i; }
+
+	private static String contorno(int i) { return CONTORNO[i / 3 % CONTORNO.length].toLowerCase()+" "+i; }
+
+	private static void aggiungi(Map<Integer, List<String>> mappa, int stanza, String nome) { mappa.computeIfAbsent(stanza, k -> new ArrayList<>()).add(nome); }
+}
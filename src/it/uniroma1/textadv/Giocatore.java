@@ -1,50 +1,72 @@
 package it.uniroma1.textadv;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /*
  * Classe che identifica il giocatore, dotato di un nome, un inventario di oggetti (inizialmente vuoto) e di una serie di metodi 
  * che gli permettono di interagire con la stanza in cui si trova e con il giocatore.
- * E previsto un solo giocatore nel gioco, quindi  sempre possibile ottenere un riferimento al giocatore grazie al singleton pattern.
+ * Ogni mondo di gioco ha il proprio giocatore, cosi nello stesso processo possono essere giocate piu partite.
  * 
  * @author Valerio Mesiti
  */
 public class Giocatore{
 	
-	private static Giocatore instance = null;
 	private String nome;
 	private List<Inventario> inventory = new ArrayList<Inventario>();
+	private Map<String, Inventario> indice = new HashMap<>();
+	private boolean vittoria;
+	private Mondo mondo;
 	
 	/*
-	 * Costruttore privato
+	 * Costruttore
 	 * 
 	 * @param	nome	nome del giocatore
 	 */
-	private Giocatore(String nome) { this.nome = nome; }
-	
-	/*
-	 * Metodo che istanzia e restituisce l'unico oggetto che pu essere creato.
-	 * 
-	 * @param	nome	nome del giocatore
-	 */
-	public static Giocatore getInstance(String nome) 
-	{
-		if (instance == null) { instance = new Giocatore(nome); }
-		return instance;
-	}
+	public Giocatore(String nome) { this.nome = nome; }
 	
 	/*
 	 * Metodo che aggiunge un oggetto in input all'inventario
-	 * controlla anche se viene aggiunto il tesoro cosi da dare vittoria al giocatore.
+	 * controlla anche se viene aggiunto il tesoro cosi da dare vittoria al giocatore:
+	 * in quel caso la partita  finita e il motore smette di leggere comandi.
 	 * 
 	 * @param	o	oggetto da aggiungere all'inventario
 	 */
 	public String addInventory(Inventario o) 
 	{ 
-		if(o.getClass().getName().equals("it.uniroma1.textadv.Oggetto$Tesoro")) { System.out.println("HAI COMPLETATO IL GIOCO, GRAZIE PER AVER GIOCATO!"); System.exit(1); return ""; }
-		else { inventory.add(o); return "Preso!"; }
+		if((o.getCapacita() & Capacita.VITTORIA) != 0) 
+		{ 
+			vittoria = true; 
+			if(mondo != null) mondo.getOutput().println("HAI COMPLETATO IL GIOCO, GRAZIE PER AVER GIOCATO!"); 
+			return ""; 
+		}
+		inventory.add(o); 
+		indice.putIfAbsent(o.getNome(), o); 
+		if(mondo != null && o instanceof Oggetto oggetto) mondo.raccogliOggetto(oggetto);
+		return "Preso!";
 	}
+	
+	/*
+	 * Getter dello stato della partita
+	 * 
+	 * @return	true se il giocatore ha raccolto il tesoro
+	 */
+	public boolean haVinto() { return vittoria; }
+	
+	/*
+	 * Setter dello stato della partita, usato per ripristinare una partita salvata.
+	 */
+	void setVittoria(boolean vittoria) { this.vittoria = vittoria; }
+	
+	/*
+	 * Setter del mondo in cui gioca il giocatore, usato per scrivere i messaggi della partita.
+	 * 
+	 * @param	mondo	il mondo di gioco
+	 */
+	void setMondo(Mondo mondo) { this.mondo = mondo; }
 
 	/*
 	 * Getter di un oggetto dal nome.
@@ -52,7 +74,7 @@ public class Giocatore{
 	 * @param	nome	nome del oggetto cercato
 	 * @return			l'oggetto cercato se  nell'inventario se non  presente null.
 	 */
-	public Inventario getItem(String nome) { for(Inventario o : getInventory()) if(o.getNome().equals(nome)) return o; return null; }
+	public Inventario getItem(String nome) { return indice.get(nome); }
 	
 	/*
 	 * Getter del nome del giocatore
@@ -62,5 +84,5 @@ public class Giocatore{
 	/*
 	 * Getter dell'inventario
 	 */
-	public List<Inventario> getInventory() { return inventory; }
+	public List<Inventario> getInventory() { return Collections.unmodifiableList(inventory); }
 }
@@ -8,9 +8,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.StringTokenizer;
-import static java.util.stream.Collectors.*;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import static java.util.stream.Collectors.toList;
 
 /*
  * Classe che rappresenta il motore del gioco, contiene tutto ci che  utile per farlo funzionare.
@@ -20,10 +23,33 @@ import static java.util.stream.Collectors.*;
 public class Gioco {
 	
 	private final static List<String> COMANDI = new ArrayList<>(Arrays.asList(/*"tp", "oggetto",*/ "comandi", "entra", "guarda", "prendi", "vai", "apri", "accarezza", "rompi", "usa", "inventario", "dai", "parla"));
-	private final static List<String> DIREZIONI = Arrays.asList("n","s","e","o");
+	private final static Set<String> DIREZIONI = Set.of("n","s","e","o");
+	private final static Set<String> SENZA_OGGETTO = Set.of("guarda", "inventario", "comandi");
 	
 	private final static Direzione[] KONAMI_CODE = { Direzione.n, Direzione.n, Direzione.s, Direzione.s, Direzione.o, Direzione.e, Direzione.o, Direzione.e };
-	private static int currentKonami;
+	private int currentKonami;
+	private boolean rifiutato;
+	private final Tokenizzatore tokenizzatore = new Tokenizzatore(Stream.concat(COMANDI.stream(), DIREZIONI.stream()).collect(toList()));
+	
+	/*
+	 * Tabella dei comandi: ad ogni verbo  associato il suo gestore, cosi il motore testuale
+	 * trova il comando con una sola ricerca invece di scorrere la lista dei verbi.
+	 */
+	private final Map<String, Comando> comandi = new HashMap<>();
+	{
+		comandi.put("comandi", this::comandi);
+		comandi.put("entra", this::entra);
+		comandi.put("guarda", this::guarda);
+		comandi.put("prendi", this::prendi);
+		comandi.put("vai", this::vai);
+		comandi.put("apri", this::apri);
+		comandi.put("accarezza", this::parla);
+		comandi.put("rompi", this::rompi);
+		comandi.put("usa", this::usa);
+		comandi.put("inventario", this::inventario);
+		comandi.put("dai", this::dai);
+		comandi.put("parla", this::parla);
+	}
 	
 	/*
 	 * Metodo che fa partire il gioco in modalit normale, dopo aver letto il mondo d un breve benvenuto
@@ -34,115 +60,117 @@ public class Gioco {
 	 */
 	public void play(Mondo w) throws IOException 
 	{
-        System.out.println(w.getName());
-        System.out.println(w.getDescription());
-        System.out.println("Il tuo viaggio iniziera tra poco, ti trovi nella zona: "+w.getPosizione());
-		System.out.println("Cosa vuoi fare adesso?");
-		System.out.println("Per uscire dal gioco, premi Q");
-		System.out.println("Per la lista dei comandi, scrivi comandi");
+		benvenuto(w);
 		
 		String input;
 		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
         do {
-            System.out.print("Inserisci un comando > ");
+            w.getOutput().print("Inserisci un comando > ");
+            w.getOutput().flush();
             input = in.readLine().trim().toLowerCase();
             String output = leggiComando(input, w);
-            System.out.println(output);
-        } while (!"q".equals(input));
+            w.getOutput().println(output);
+        } while (!"q".equals(input) && !w.getPlayer().haVinto());
+        w.getOutput().chiudi();
 	}
 	
 	/*
 	 * Metodo che fa partire il gioco in modalit ff (fast forward), dopo aver letto il mondo d un breve benvenuto
 	 * e fa iniziare a giocare leggendo gli input dati da un file e dando un output a schermo.
-	 * Il metodo continuer finche non si vince.
+	 * Il metodo continuer finche non si vince o finiscono i comandi del file.
 	 * 
 	 * @param	w	mondo dove si vuole giocare.
 	 * @param	p	il file dove sono presenti i comandi per vincere.
+	 * @return		il numero di comandi eseguiti
 	 */
-	public void play(Mondo w, Path p) throws FileNotFoundException, IOException 
+	public int play(Mondo w, Path p) throws FileNotFoundException, IOException 
 	{
-		System.out.println(w.getName());
-        System.out.println(w.getDescription());
-        System.out.println("Il tuo viaggio iniziera tra poco, ti trovi nella zona: "+w.getPosizione());
-		System.out.println("Cosa vuoi fare adesso?");
-		System.out.println("Per uscire dal gioco, premi Q");
-		System.out.println("Per la lista dei comandi, scrivi comandi");
+		benvenuto(w);
 		
+		int comandi = 0;
 		try(BufferedReader br  = Files.newBufferedReader(p))
 		{
-			while(br.ready())
+			String riga;
+			while(!w.getPlayer().haVinto() && (riga = br.readLine()) != null)
 			{
-				String riga = br.readLine();
 				if(riga.contains(" // ")) riga = riga.split(" // ")[0];
-				System.out.println(riga);
+				w.getOutput().println(riga);
 				leggiComando(riga.toLowerCase(), w);
+				w.getOutput().flush();
+				comandi++;
 			}
 		}
+		finally { w.getOutput().chiudi(); }
+		return comandi;
+	}
+	
+	/*
+	 * Metodo che d il benvenuto nel mondo di gioco.
+	 * 
+	 * @param	w	mondo dove si vuole giocare.
+	 */
+	void benvenuto(Mondo w)
+	{
+		w.getOutput().println(w.getName());
+		w.getOutput().println(w.getDescription());
+		w.getOutput().println("Il tuo viaggio iniziera tra poco, ti trovi nella zona: "+w.getPosizione());
+		w.getOutput().println("Cosa vuoi fare adesso?");
+		w.getOutput().println("Per uscire dal gioco, premi Q");
+		w.getOutput().println("Per la lista dei comandi, scrivi comandi");
 	}
 	
 	/*
 	 * Metodo che permette la lettura di un comando:
 	 * se viene inserita la "q" il metodo non reagisce cosi da permettere l'uscita dal gioco,
-	 * se non viene inserito nulla viene ritornato un messaggio a schermo invece,
+	 * se non viene inserito nulla (o solo articoli e preposizioni) viene ritornato un messaggio a schermo invece,
 	 * se viene inserito un comando considerato valido da questo metodo lo si manda
 	 * al parseCommand che gestisce i funzionamenti dei comandi.
+	 * Se il mondo ha un {@link Diario}, il comando eseguito vi viene registrato;
+	 * se le {@link Metriche} sono attive, vi vengono registrati il verbo, l'esito e la durata del comando.
 	 * 
 	 * @param	input	il comando inserito
 	 * @param	w		il mondo di gioco
 	 * @return			una stringa vuota per un comando valido, un errore se l'input  vuoto
 	 */
-	private static String leggiComando(String input, Mondo w) 
+	String leggiComando(String input, Mondo w) 
 	{
         String s = "";
         
         if (!input.equals("q")) 
         {
-            if (input.equals("")) s = "Devi inserire un comando";
-            else 
+            Metriche metriche = Metriche.getAttive();
+            long inizio = (metriche == null) ? 0 : System.nanoTime();
+            Metriche.Esito esito = Metriche.Esito.ERRORE;
+            rifiutato = false;
+            try
             {
-            	List<String> wl = tokenizzatore(input);
-                //wl.forEach((token) -> System.out.println(token));
-                parseCommand(wl, w);
+                if (tokenizzatore.tokenizza(input) == 0) s = rifiuta("Devi inserire un comando");
+                else parseCommand(tokenizzatore, w);
+                esito = rifiutato ? Metriche.Esito.RIFIUTATO : Metriche.Esito.RIUSCITO;
             }
+            finally { if (metriche != null) metriche.registra(tokenizzatore.isEmpty() ? null : tokenizzatore.get(0), esito, System.nanoTime() - inizio); }
+            if (w.getDiario() != null) w.getDiario().registra(input, w, currentKonami);
         }
         return s;
     }
 	
 	/*
-	 * Metodo che permette la tokenizzazione in parole chiave di un comando:
-	 * la frase inserita in input viene spogliata di tutti gli articoli e le preposizioni
-	 * per poi suddividerla in token e restituire un array di parole chiave che utilizzer
-	 * il parseCommand.
+	 * Metodo che segna il comando in corso come rifiutato, per le {@link Metriche}.
 	 * 
-	 * @param	input	il comando inserito
-	 * @return			un array di stringhe chiave
+	 * @param	messaggio	il messaggio d'errore da mostrare al giocatore
+	 * @return				lo stesso messaggio
 	 */
-	private static List<String> tokenizzatore(String input) 
+	private String rifiuta(String messaggio)
 	{
-        String separatori = " \t,.:;?!\"'";
-        List<String> articoli = Arrays.asList("il","lo","la","i","gli","le");
-        List<String> preposizioni = Arrays.asList("a","da","in","con","per","tra","fra",
-        										  "dello","della","dei","degli","delle",
-        										  "al","allo","alla","ai","agli","alle",
-        										  "dal","dallo","dalla","dagli","dalle",
-        										  "nel","nello","nella","nei","negli","nelle",
-        										  "col","coi","sul","sullo","sulla","sui","sugli","sulle");
-        List<String> strlist = new ArrayList<>();
-        StringTokenizer tokenizer = new StringTokenizer(input, separatori);
-        
-        while (tokenizer.hasMoreTokens()) 
-        	{
-        		String token = tokenizer.nextToken();
-        		if(!articoli.contains(token) && !preposizioni.contains(token)) strlist.add(token);
-        	}
-        return strlist;
-    }
+		rifiutato = true;
+		return messaggio;
+	}
 	
 	/*
 	 * Metodo che rappresenta il motore testuale
 	 * Prende in input la lista di parole chiave e le gestisce cosi da fornirci un output a schermo,
-	 * la prima parola della lista  il comando e viene confrontato con la lista dei comandi funzionanti
-	 * cosi da indirizzarlo sullo switch giusto, da li ogni caso ha il suo mini-funzionamento gestito da
+	 * la prima parola della lista  il comando e viene cercata nella tabella dei comandi
+	 * cosi da passare le parole al gestore giusto, da li ogni verbo ha il suo mini-funzionamento gestito da
 	 * metodi seguenti. 
 	 * Restituisce a schermo "Comando non valido" se: 
 	 * non trova il verbo giusto,
@@ -153,213 +181,315 @@ public class Gioco {
 	 * @param	wordList	la lista delle parole chiave date dal tokenizzatore
 	 * @param	m			il mondo di gioco
 	 */
-	private static void parseCommand(List<String> wordList, Mondo m) 
+	private void parseCommand(List<String> wordList, Mondo m) 
 	{
-		Giocatore player = m.getPlayer();
-		Stanza posizione = m.getPosizione();
         String verb = wordList.get(0);
-        List<String> oggetti = posizione.getItems().stream().filter(Oggetto :: isVisibile).map(Oggetto :: getNome).collect(toList());
-        List<String> personaggi = posizione.getCharacters().stream().map(Character :: getNome).map(String :: toLowerCase).collect(toList());
-        List<String> links = posizione.getLinks().values().stream().map(Link :: getNome).map(String :: toLowerCase).collect(toList());
-        List<String> inventario = player.getInventory().stream().map(Inventario :: getNome).collect(toList());
-        String oggetto;
+        Comando comando = comandi.get(verb);
         
-        if (!COMANDI.contains(verb)) System.out.println(verb + " non  un comando valido!");
-        else if(wordList.size() == 1)
-        {
-        	switch(verb)
+        if (comando == null) m.getOutput().println(rifiuta(verb + " non  un comando valido!"));
+        else if (wordList.size() == 1 && !SENZA_OGGETTO.contains(verb)) m.getOutput().println(rifiuta("Comando incompleto!"));
+        else comando.esegui(wordList, m);
+        m.getOutput().println();
+    }
+	
+	/*
+	 * Metodo che ricava l'oggetto di un comando, ossia il nome piu lungo di un elemento del mondo
+	 * che inizia alla seconda parola chiave; se le parole non formano nessun nome restituisce la seconda parola.
+	 * 
+	 * @param	wordList	la lista delle parole chiave
+	 * @param	m			il mondo di gioco
+	 * @return				il nome dell'oggetto del comando
+	 */
+	private static String oggetto(List<String> wordList, Mondo m)
+	{
+		Risolutore.Voce v = m.getRisolutore().cerca(wordList, 1);
+		return v == null ? wordList.get(1) : v.getNome();
+	}
+	
+	/*
+	 * Metodo che restituisce la posizione della prima parola chiave che segue l'oggetto del comando.
+	 * 
+	 * @param	wordList	la lista delle parole chiave
+	 * @param	m			il mondo di gioco
+	 * @return				la posizione dopo l'oggetto, uguale alla dimensione della lista se il comando finisce con l'oggetto
+	 */
+	private static int dopoOggetto(List<String> wordList, Mondo m)
+	{
+		Risolutore.Voce v = m.getRisolutore().cerca(wordList, 1);
+		return v == null ? 2 : 1 + v.getParole();
+	}
+	
+	/*
+	 * Metodo che ricava il complemento di un comando (l'utensile, il bersaglio o il personaggio),
+	 * ossia il primo nome di un elemento del mondo che compare dopo l'oggetto.
+	 * 
+	 * @param	wordList	la lista delle parole chiave
+	 * @param	m			il mondo di gioco
+	 * @return				il nome del complemento, null se non c'
+	 */
+	private static String complemento(List<String> wordList, Mondo m)
+	{
+		Risolutore.Voce v = m.getRisolutore().cercaDopo(wordList, dopoOggetto(wordList, m));
+		return v == null ? null : v.getNome();
+	}
+	
+	/*
+	 * Gestore del comando "guarda": senza oggetto descrive la stanza, altrimenti l'oggetto, l'uscita o il personaggio indicato.
+	 */
+	private void guarda(List<String> wordList, Mondo m)
+	{
+		Stanza posizione = m.getPosizione();
+		if(wordList.size() == 1)
+		{
+			List<String> oggetti = posizione.getNomiVisibili();
+			m.getOutput().println("Sei nella zona: "+posizione.getDescription());
+			if(!posizione.getCharacters().isEmpty()) m.getOutput().println("Con te in questa zona ci sono: "+ posizione.getCharacters());
+			if(!oggetti.isEmpty()) m.getOutput().println("Ci sono i seguenti oggetti sparsi nella zona: "+ oggetti);
+			m.getOutput().println("Ci sono inoltre delle uscite: "+ posizione.getLinks());
+			return;
+		}
+		String oggetto = oggetto(wordList, m);
+		Oggetto o;
+		Link l;
+		Character c;
+		if ((o = posizione.getItemVisibile(oggetto)) != null) m.getOutput().println(o.guarda());
+		else if ((l = posizione.getLink(oggetto)) != null) m.getOutput().println(l.guarda());
+		else if ((c = posizione.getCharacter(oggetto)) != null) m.getOutput().println(c.getNome());
+		else m.getOutput().println(rifiuta(oggetto + " non  presente in questa stanza!"));
+	}
+	
+	/*
+	 * Gestore del comando "inventario".
+	 */
+	private void inventario(List<String> wordList, Mondo m)
+	{
+		if(wordList.size() > 1) { m.getOutput().println(rifiuta("Comando non valido!")); return; }
+		List<String> inventario = new ArrayList<>();
+		for(Inventario o : m.getPlayer().getInventory()) inventario.add(o.getNome());
+		m.getOutput().println("INVENTARIO: "+inventario);
+	}
+	
+	/*
+	 * Gestore del comando "comandi".
+	 */
+	private void comandi(List<String> wordList, Mondo m)
+	{
+		if(wordList.size() > 1) m.getOutput().println(rifiuta("Comando non valido!"));
+		else m.getOutput().println("COMANDI: "+COMANDI);
+	}
+	
+	/*
+	 * Gestore del comando "vai *direzione*", tiene traccia delle direzioni per l'ester egg,
+	 * o "vai a *stanza*", che porta il giocatore nella stanza per la strada piu breve.
+	 */
+	private void vai(List<String> wordList, Mondo m)
+	{
+		String oggetto = wordList.get(1);
+		Stanza stanza;
+		if(DIREZIONI.contains(oggetto)) { m.getOutput().println(caseVai(Direzione.valueOf(oggetto), m)); checkKonami(Direzione.valueOf(oggetto), m); }
+		else if((stanza = m.getStanza(oggetto(wordList, m))) != null) m.getOutput().println(caseViaggio(stanza, m));
+		else m.getOutput().println(rifiuta(oggetto+" non  una direzione consentita"));
+	}
+	
+	/*
+	 * Gestore del comando "entra *link*".
+	 */
+	private void entra(List<String> wordList, Mondo m)
+	{
+		Link l = m.getPosizione().getLink(oggetto(wordList, m));
+		if (l != null) m.getOutput().println(caseVai(l, m));
+		else m.getOutput().println(rifiuta("Comando non valido!"));
+	}
+	
+	/*
+	 * Gestore del comando "apri *link* [con *utensile*]" o "apri *oggetto*".
+	 */
+	private void apri(List<String> wordList, Mondo m)
+	{
+		String oggetto = oggetto(wordList, m);
+		Link l = m.getPosizione().getLink(oggetto);
+		if (l != null) 
+		{
+			int dopo = dopoOggetto(wordList, m);
+			if(dopo < wordList.size()) 
 			{
-				case "guarda": 
-					System.out.println("Sei nella zona: "+posizione.getDescription());
-					if(personaggi.size() != 0) System.out.println("Con te in questa zona ci sono: "+ posizione.getCharacters());
-					if(oggetti.size() != 0) System.out.println("Ci sono i seguenti oggetti sparsi nella zona: "+ oggetti);
-					System.out.println("Ci sono inoltre delle uscite: "+ posizione.getLinks());
-					break;
-				case "inventario": System.out.println("INVENTARIO: "+inventario); break;
-				case "comandi": System.out.println("COMANDI: "+COMANDI); break;
-				default: System.out.println("Comando incompleto!");
+				String nome = complemento(wordList, m);
+				var utensile = nome == null ? null : m.getPlayer().getItem(nome);
+				if (utensile != null && (utensile.getCapacita() & Capacita.APRITORE) != 0 && l.getUtil().equals(utensile.getNome())) m.getOutput().println(((Opener) utensile).apri(l)); 
+				else m.getOutput().println(rifiuta("non hai "+wordList.get(dopo)+" nell'inventario!"));
 			}
-        }
-        else
-        {
-        	oggetto = wordList.get(1);
-        	if(wordList.size() > 2 && (oggetto.equals("porta") || oggetto.equals("armadio") || oggetto.equals("grande"))) oggetto+=" "+wordList.get(2);
-        	switch(verb)
-			{
-				case "guarda": 
-					if (oggetti.contains(oggetto)) { System.out.println(posizione.getItem(oggetto).guarda()); }
-					else if (links.contains(oggetto)) { System.out.println(posizione.getLink(oggetto).guarda()); }
-					else if (personaggi.contains(oggetto)) { System.out.println(posizione.getCharacter(oggetto).getNome()); }
-					else System.out.println(oggetto + " non  presente in questa stanza!");					
-					break;
-					
-				case "vai":
-					if(DIREZIONI.contains(oggetto)) { System.out.println(caseVai(Direzione.valueOf(oggetto), m)); checkKonami(Direzione.valueOf(oggetto)); }
-					else System.out.println(oggetto+" non  una direzione consentita");
-					break;
-				
-				case "entra":
-					oggetto = String.join(" ", wordList.subList(1, wordList.size()));
-					if (links.contains(oggetto)) System.out.println(caseVai(posizione.getLink(oggetto), m));
-					else System.out.println("Comando non valido!");
-					break;
-					
-				case "apri":
-					if (links.contains(oggetto)) 
-					{
-						Link l = posizione.getLink(oggetto);
-						if(wordList.size() > 3) 
-						{
-							var utensile = player.getItem(String.join(" ", wordList.subList(3, wordList.size())));
-							if (utensile != null && l.getUtil().equals(utensile.getNome())) System.out.println(((Opener) utensile).apri(l)); 
-							else System.out.println("non hai "+wordList.get(3)+" nell'inventario!");
-						}
-						else if(l.getUtil().equals("")) System.out.println(l.apri());
-						else System.out.println(oggetto + "  chiusa!");
-						break;
-					}
-					else System.out.println(caseApri(oggetto, m));
-					break;
-					
-				case "prendi": 
-					var personaggioChiave = posizione.getPersonaggioChiave();
-					if(personaggioChiave != null && personaggioChiave.getInventory().contains(oggetto))
-						if(personaggioChiave.getInventory().contains(oggetto) && !personaggioChiave.isTranquillo()) System.out.println(personaggioChiave.parla(m));
-						else casePrendi(oggetto, posizione, player);
-					
-					else if (links.contains(oggetto)) System.out.println(caseVai(posizione.getLink(oggetto), m));
-					else if (personaggi.contains(oggetto)) System.out.println(player.addInventory((Inventario) posizione.getCharacter(oggetto)));
-					else System.out.println(casePrendi(oggetto, posizione, player));
-					break;
-					
-				case "accarezza":
-				case "parla":
-					if(personaggi.contains(oggetto)) System.out.println(posizione.getCharacter(oggetto).parla(m));
-					else System.out.println("Comando non valido!");
-					break;
-					
-				case "rompi":
-					if (oggetti.contains(oggetto) && wordList.size() > 2) System.out.println(((Utensile) player.getItem(wordList.get(2))).usa(posizione.getItem(oggetto), m));
-					else System.out.println("Comando non valido!");
-					break;
-					
-				case "usa":
-					if(wordList.size() == 2 && links.contains(oggetto)) System.out.println(caseVai(posizione.getLink(oggetto), m));
-					else if (wordList.size() > 2) 
-					{
-						String linkName = wordList.get(wordList.size()-1);
-						if (links.contains(linkName))
-						{	
-							if (oggetto.equals("chiave")) oggetto += " "+wordList.get(2);
-							Link l = posizione.getLink(linkName);
-							System.out.println(((Opener) player.getItem(oggetto)).apri(l));
-							if(l.getNome().equals("teletrasporto")) System.out.println(caseVai(l, m));
-						}
-						else System.out.println(((Utensile) player.getItem(oggetto)).usa(posizione.getItem(linkName), m));
-					}
-					else System.out.println("Comando non valido!");
-					break;
-					
-				case "dai":
-					if (inventario.contains(oggetto) && wordList.size() > 2) ((Persona) posizione.getCharacter(String.join(" ", wordList.subList(2, wordList.size())))).dai((Inventario) player.getItem(oggetto), m);
-					else System.out.println("Comando non valido!");
-					break;
-					
-				/*
-				 * Cheat per la programmazione
-				case "oggetto":
-					oggetto = String.join(" ", wordlist.subList(1, wordlist.size()));
-					player.addInventory(m.getItem(oggetto));
-					break;
-					
-				case "tp":
-					oggetto = String.join(" ", wordlist.subList(1, wordlist.size()));
-					m.setPosizione(m.getStanza(oggetto));
-					System.out.println("la nuova posizone  "+posizione);*/
-					
-				default: System.out.println("Comando non valido!");
+			else if(l.getUtil().equals("")) m.getOutput().println(l.apri());
+			else m.getOutput().println(rifiuta(oggetto + "  chiusa!"));
+		}
+		else m.getOutput().println(caseApri(oggetto, m));
+	}
+	
+	/*
+	 * Gestore del comando "prendi *oggetto*", tiene conto dei personaggi chiave che custodiscono gli oggetti.
+	 */
+	private void prendi(List<String> wordList, Mondo m)
+	{
+		String oggetto = oggetto(wordList, m);
+		Stanza posizione = m.getPosizione();
+		Giocatore player = m.getPlayer();
+		var personaggioChiave = posizione.getPersonaggioChiave();
+		Link l;
+		Character c;
+		if(personaggioChiave != null && personaggioChiave.getInventory().contains(oggetto))
+			if(!personaggioChiave.isTranquillo()) m.getOutput().println(rifiuta(personaggioChiave.parla(m)));
+			else casePrendi(oggetto, posizione, player);
+		
+		else if ((l = posizione.getLink(oggetto)) != null) m.getOutput().println(caseVai(l, m));
+		else if ((c = posizione.getCharacter(oggetto)) != null) 
+			m.getOutput().println((c.getCapacita() & Capacita.RACCOGLIBILE) != 0 ? player.addInventory((Inventario) c) : rifiuta("Non puoi raccogliere "+oggetto+"!"));
+		else m.getOutput().println(casePrendi(oggetto, posizione, player));
+	}
+	
+	/*
+	 * Gestore dei comandi "parla *personaggio*" e "accarezza *personaggio*".
+	 */
+	private void parla(List<String> wordList, Mondo m)
+	{
+		Character c = m.getPosizione().getCharacter(oggetto(wordList, m));
+		if(c != null) m.getOutput().println(c.parla(m));
+		else m.getOutput().println(rifiuta("Comando non valido!"));
+	}
+	
+	/*
+	 * Gestore del comando "rompi *oggetto* con *utensile*".
+	 */
+	private void rompi(List<String> wordList, Mondo m)
+	{
+		Oggetto o = m.getPosizione().getItemVisibile(oggetto(wordList, m));
+		String nome = complemento(wordList, m);
+		var utensile = nome == null ? null : m.getPlayer().getItem(nome);
+		if (o != null && utensile != null && (utensile.getCapacita() & Capacita.UTENSILE) != 0) m.getOutput().println(((Utensile) utensile).usa(o, m));
+		else m.getOutput().println(rifiuta("Comando non valido!"));
+	}
+	
+	/*
+	 * Gestore del comando "usa *link*" o "usa *utensile* su *link/oggetto*".
+	 */
+	private void usa(List<String> wordList, Mondo m)
+	{
+		String oggetto = oggetto(wordList, m);
+		String bersaglio = complemento(wordList, m);
+		Stanza posizione = m.getPosizione();
+		Link l;
+		Oggetto o;
+		if(dopoOggetto(wordList, m) == wordList.size() && (l = posizione.getLink(oggetto)) != null) m.getOutput().println(caseVai(l, m));
+		else if (bersaglio != null) 
+		{
+			var utensile = m.getPlayer().getItem(oggetto);
+			int capacita = (utensile == null) ? 0 : utensile.getCapacita();
+			if ((l = posizione.getLink(bersaglio)) != null && (capacita & Capacita.APRITORE) != 0)
+			{	
+				m.getOutput().println(((Opener) utensile).apri(l));
+				if(l.getNome().equals("teletrasporto")) m.getOutput().println(caseVai(l, m));
 			}
-        }
-        System.out.println();
-    }
+			else if (l == null && (o = posizione.getItem(bersaglio)) != null && (capacita & Capacita.UTENSILE) != 0) m.getOutput().println(((Utensile) utensile).usa(o, m));
+			else m.getOutput().println(rifiuta("Comando non valido!"));
+		}
+		else m.getOutput().println(rifiuta("Comando non valido!"));
+	}
+	
+	/*
+	 * Gestore del comando "dai *oggetto* a *personaggio*".
+	 */
+	private void dai(List<String> wordList, Mondo m)
+	{
+		Inventario o = m.getPlayer().getItem(oggetto(wordList, m));
+		String personaggio = complemento(wordList, m);
+		Character c = (personaggio == null) ? null : m.getPosizione().getCharacter(personaggio);
+		if (o != null && c != null && (c.getCapacita() & Capacita.PERSONA) != 0) ((Persona) c).dai(o, m);
+		else m.getOutput().println(rifiuta("Comando non valido!"));
+	}
 	
 	/*
 	 * Metodo che rappresenta il caso "Vai *direzione*"
-	 * controlla che ci sia un link in quella direzione
-	 * e se presente chiama il secondo metodo che ti ci fa spostare.
+	 * legge nel grafo del mondo la stanza in cui porta l'uscita in quella direzione e il link da attraversare:
+	 * se il link  aperto ti ci fa spostare.
 	 * 
 	 * @param	direzione	la direzione in cui si vuole andare
 	 * @param	m			il mondo di gioco
-	 * @return				se non c' un link nella direzione inserita una frase di errore, senn il secondo metodo.
+	 * @return				se non c' un'uscita nella direzione inserita una frase di errore, guarda() del link se  chiuso, senn la nuova posizione.
 	 */
-	private static String caseVai(Direzione direzione, Mondo m)
+	private String caseVai(Direzione direzione, Mondo m)
 	{
-		Link link = m.getPosizione().getLink(direzione);
-		if(link == null) return "non c' niente a "+direzione;
-		return caseVai(link, m);
+		Grafo g = m.getGrafo();
+		int da = m.getPosizione().getId();
+		int a = g.getDestinazione(da, direzione);
+		if(a == Grafo.NESSUNA) return rifiuta("non c' niente a "+direzione);
+		int passaggio = g.getPassaggio(da, direzione);
+		if(passaggio != Grafo.NESSUNA && m.isChiuso(passaggio)) return rifiuta(m.getPosizione().getLink(direzione).guarda());
+		m.setPosizione(m.getStanza(a));
+		return "la nuova posizone  "+m.getPosizione();
+	}
+	
+	/*
+	 * Metodo che rappresenta il caso "Vai a *stanza*"
+	 * cerca il percorso piu breve fino alla stanza passando solo per link aperti e, se c', ti ci porta.
+	 * 
+	 * @param	destinazione	la stanza in cui si vuole andare
+	 * @param	m				il mondo di gioco
+	 * @return					la nuova posizione e il numero di passi fatti, una frase di errore se la stanza non  raggiungibile.
+	 */
+	private String caseViaggio(Stanza destinazione, Mondo m)
+	{
+		List<Direzione> percorso = m.getPercorso(m.getPosizione(), destinazione);
+		if(percorso == null) return rifiuta("non c' una strada aperta per "+destinazione);
+		m.setPosizione(destinazione);
+		return "la nuova posizone  "+destinazione+" ("+percorso.size()+" passi)";
 	}
 	
 	/*
 	 * Metodo che rappresenta il caso "Vai *link*"
-	 * controlla che il link dato sia aperto, se si ti ci fa spostare
-	 * cambiando la posizione del giocatore e ribaltando i setting del link
-	 * cosi da trovarlo spechhiato nella stanza dove stiamo andando.
+	 * cerca la direzione del link nella stanza in cui ci troviamo e chiama il metodo che ti ci fa spostare.
 	 * 
 	 * @param	link	il link in cui si vuole andare
 	 * @param	m		il mondo di gioco
-	 * @return			guarda() se chiuso cosi da restituire un messaggio, la nuova posizione nel caso di spostamento.
+	 * @return			il risultato dello spostamento nella direzione del link.
 	 */
-	private static String caseVai(Link link, Mondo m)
+	private String caseVai(Link link, Mondo m)
 	{
-		if(link.getChiusa()) return link.guarda();
-		else
-		{
-			Stanza destinazione = m.getStanza(link.getDestinazione());
-			if(!link.getNome().equals(link.getDestinazione())) link.setDestinazione(m.getPosizione().getName());
-			if (destinazione == null) m.setPosizione(m.getStanza(link.getNome()));
-			else m.setPosizione(destinazione);
-			return "la nuova posizone  "+m.getPosizione();
-		}
+		for(Map.Entry<Direzione, Link> uscita : m.getPosizione().getLinks().entrySet()) if(uscita.getValue() == link) return caseVai(uscita.getKey(), m);
+		return rifiuta("Comando non valido!");
 	}
 	
 	/*
 	 * Metodo che rappresenta il caso "Prendi *oggetto*"
-	 * prova a prendere l'oggetto facendo il cast ad Inventario, aggiungendolo e rimuovendolo dalla stanza
-	 * cosi nel caso in cui non si possa fare il cast vuol dire che l'oggetto non si pu raccogliere
-	 * o nel secondo caso di errore non sar valido il comando
+	 * se l'oggetto  nella stanza e si puo raccogliere (vedi {@link Capacita#RACCOGLIBILE}) lo rimuove dalla stanza e lo aggiunge all'inventario,
+	 * se non si puo raccogliere resta nella stanza, se non c' il comando non  valido
 	 * 
 	 * @param	oggetto			l'oggetto che si vuole raccogliere
 	 * @param	posizione		la stanza dove ci troviamo
 	 * @param	player			il giocatore
 	 * @return					nel caso vada bene addInventory(Inventario) cosi da restituire un messaggio di successo, in altri casi un messaggio d'errore
 	 */
-	private static String casePrendi(String oggetto, Stanza posizione, Giocatore player)
+	private String casePrendi(String oggetto, Stanza posizione, Giocatore player)
 	{
-		try
-		{
-			Oggetto o = posizione.getItem(oggetto);
-			posizione.getItems().remove(o);
-			return player.addInventory((Inventario) o);
-		}
-		catch (ClassCastException e) { return "Non puoi raccogliere quest'oggetto!"; }
-		catch (NullPointerException e) { return "Comando non valido!"; }
+		Oggetto o = posizione.getItem(oggetto);
+		if (o == null) return rifiuta("Comando non valido!");
+		if ((o.getCapacita() & Capacita.RACCOGLIBILE) == 0) return rifiuta("Non puoi raccogliere quest'oggetto!");
+		posizione.removeItem(o);
+		return player.addInventory((Inventario) o);
 	}
 	
 	/*
 	 * Metodo che rappresenta il caso "Apri *oggetto*"
-	 * prova ad aprire l'oggetto facendo il cast ad Container
-	 * cosi nel caso in cui non si possa fare il cast vuol dire che l'oggetto non si pu aprire
-	 * o nel secondo caso di errore non sar valido il comando
+	 * se l'oggetto  nella stanza e si puo aprire (vedi {@link Capacita#CONTENITORE}) lo apre,
+	 * altrimenti restituisce un messaggio d'errore
 	 * 
 	 * @param	oggetto			l'oggetto che si vuole aprire
 	 * @param	m				il mondo di gioco
 	 * @return					nel caso vada bene apri(Mondo) cosi da restituire un messaggio di successo, in altri casi un messaggio d'errore
 	 */
-	private static String caseApri(String oggetto, Mondo m)
+	private String caseApri(String oggetto, Mondo m)
 	{
-		try { return ((Container) m.getPosizione().getItem(oggetto)).apri(m); }
-		catch (ClassCastException e) { return "Non puoi aprire quest'oggetto!"; }
-		catch (NullPointerException e) { return "Comando non valido!"; }
+		Oggetto o = m.getPosizione().getItem(oggetto);
+		if (o == null) return rifiuta("Comando non valido!");
+		if ((o.getCapacita() & Capacita.CONTENITORE) == 0) return rifiuta("Non puoi aprire quest'oggetto!");
+		return ((Container) o).apri(m);
 	}
 	
 	/*
@@ -369,16 +499,17 @@ public class Gioco {
 	 * restituisce l'ester egg attivo
 	 * 
 	 * @param	code	il comando direzionale inserito
+	 * @param	m		il mondo di gioco
 	 */
-	private static void checkKonami(Direzione code) {
+	private void checkKonami(Direzione code, Mondo m) {
         if (code == KONAMI_CODE[currentKonami]) currentKonami++;
         else currentKonami = 0;
         if (currentKonami == KONAMI_CODE.length) 
         {
-        	System.out.println();
-        	System.out.println();
-        	System.out.println("Konami_Code Attivato!!!!\n");
-            System.out.println("____0000000000______0000000000_____\r\n"
+        	m.getOutput().println();
+        	m.getOutput().println();
+        	m.getOutput().println("Konami_Code Attivato!!!!\n");
+            m.getOutput().println("____0000000000______0000000000_____\r\n"
             				 + "__000________000__000________000___\r\n"
             				 + "_000___________0000___________000__\r\n"
             				 + "000_____________00_____________000_\r\n"
@@ -401,4 +532,9 @@ public class Gioco {
 	 * Getter dei comandi
 	 */
 	public static List<String> getComandi() { return COMANDI; }
+	
+	/*
+	 * Setter della posizione nella sequenza del konami code, per riprendere una partita da un {@link Diario}.
+	 */
+	void setKonami(int konami) { currentKonami = konami; }
 }
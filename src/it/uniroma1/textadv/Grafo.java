@@ -0,0 +1,251 @@
+package it.uniroma1.textadv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma1.textadv.DefinizioneMondo.DefinizioneStanza;
+
+/*
+ * Classe che identifica la mappa del mondo compilata in tabelle di interi, per spostarsi senza cercare stanze per nome.
+ * Le stanze e i link sono numerati nell'ordine della definizione; per ogni stanza e ogni direzione
+ * la tabella delle destinazioni dice in quale stanza si arriva e quella dei passaggi attraverso quale link,
+ * entrambe indicizzate da stanza * 4 + direzione.ordinal(). Un passo costa cosi due letture di array.
+ * Le uscite che portano direttamente a una stanza non hanno link e non sono mai chiuse.
+ * Un link collega la stanza da cui parte e quella in cui porta: da una delle due si arriva nell'altra.
+ * Il grafo  immutabile e conosce solo lo stato iniziale dei link: quello durante la partita  tenuto
+ * dallo {@link StatoMondo} e viene passato alle visite che calcolano i percorsi.
+ *
+ * @author Valerio Mesiti
+ */
+final class Grafo {
+
+	/*
+	 * Valore delle tabelle per una direzione senza uscita o un'uscita senza link.
+	 */
+	static final int NESSUNA = -1;
+
+	private static final int DIREZIONI = Direzione.values().length;
+
+	private final String[] stanze;
+	private final int[] destinazioni;
+	private final int[] passaggi;
+	private final int[] partenze;
+	private final int[] arrivi;
+	private final BitSet chiusi = new BitSet();
+	private final Map<String, Integer> links = new HashMap<>();
+
+	/*
+	 * Costruttore
+	 *
+	 * @param	stanze	il numero di stanze
+	 * @param	links	il numero di link
+	 */
+	private Grafo(int stanze, int links)
+	{
+		this.stanze = new String[stanze];
+		destinazioni = new int[stanze * DIREZIONI];
+		passaggi = new int[stanze * DIREZIONI];
+		partenze = new int[links];
+		arrivi = new int[links];
+		Arrays.fill(destinazioni, NESSUNA);
+		Arrays.fill(passaggi, NESSUNA);
+	}
+
+	/*
+	 * Metodo che compila il grafo di una definizione: i link partono dalla prima stanza della loro riga
+	 * e portano nella seconda. Il loro stato iniziale lo conosce chi li ha gia istanziati, e lo passa al grafo.
+	 *
+	 * @param	d		la definizione del mondo
+	 * @param	chiusi	i link chiusi all'inizio della partita, per riga del blocco [links]
+	 * @return			il grafo del mondo
+	 */
+	static Grafo fromDefinizione(DefinizioneMondo d, BitSet chiusi)
+	{
+		List<DefinizioneStanza> stanze = d.getStanze();
+		Grafo g = new Grafo(stanze.size(), d.getLinks().size());
+		Map<String, Integer> id = g.numera(stanze.stream().map(DefinizioneStanza::getNome).toList());
+		for(int l = 0; l < d.getLinks().size(); l++)
+		{
+			String[] riga = d.getLinks().get(l);
+			g.links.putIfAbsent(chiave(riga[0]), l);
+			g.partenze[l] = id.getOrDefault(chiave(riga[2]), NESSUNA);
+			g.arrivi[l] = id.getOrDefault(chiave(riga[3]), NESSUNA);
+		}
+		g.chiusi.or(chiusi);
+		for(int s = 0; s < stanze.size(); s++)
+			for(Map.Entry<Direzione, String> uscita : stanze.get(s).getUscite().entrySet()) g.collega(s, uscita.getKey(), uscita.getValue(), id);
+		return g;
+	}
+
+	/*
+	 * Metodo che compila il grafo di un mondo costruito a mano, numerando le stanze nell'ordine della mappa
+	 * e i link nell'ordine in cui sono stati aggiunti al mondo, come nel suo stato.
+	 * Il mondo aggiunge a s i link delle sue stanze prima di compilare il grafo, cosi ogni link del grafo ha il suo stato.
+	 *
+	 * @param	mappa	le stanze del mondo
+	 * @param	links	i link del mondo
+	 * @return			il grafo del mondo
+	 */
+	static Grafo fromStanze(List<Stanza> mappa, List<Link> links)
+	{
+		Grafo g = new Grafo(mappa.size(), links.size());
+		Map<String, Integer> id = g.numera(mappa.stream().map(Stanza::getName).toList());
+		for(int n = 0; n < links.size(); n++)
+		{
+			Link l = links.get(n);
+			g.chiusi.set(n, l.getChiusaIniziale());
+			if(l.getPartenza() == null) continue;
+			g.links.putIfAbsent(chiave(l.getNome()), n);
+			g.partenze[n] = id.getOrDefault(chiave(l.getPartenza()), NESSUNA);
+			g.arrivi[n] = id.getOrDefault(chiave(l.getArrivo()), NESSUNA);
+		}
+		for(int s = 0; s < mappa.size(); s++) mappa.get(s).setId(s);
+		for(int s = 0; s < mappa.size(); s++)
+			for(Map.Entry<Direzione, Link> uscita : mappa.get(s).getLinks().entrySet()) g.collega(s, uscita.getKey(), uscita.getValue().getNome(), id);
+		return g;
+	}
+	
+	/*
+	 * Metodo che assegna i numeri alle stanze.
+	 *
+	 * @param	nomi	i nomi delle stanze, in ordine
+	 * @return			i numeri delle stanze per nome, usati solo durante la compilazione
+	 */
+	private Map<String, Integer> numera(List<String> nomi)
+	{
+		Map<String, Integer> id = new HashMap<>();
+		for(int s = 0; s < nomi.size(); s++)
+		{
+			stanze[s] = nomi.get(s);
+			id.putIfAbsent(chiave(nomi.get(s)), s);
+		}
+		return id;
+	}
+
+	/*
+	 * Metodo che scrive nelle tabelle un'uscita di una stanza.
+	 *
+	 * @param	stanza	il numero della stanza
+	 * @param	d		la direzione dell'uscita
+	 * @param	uscita	il nome del link o della stanza a cui porta l'uscita
+	 * @param	id		i numeri delle stanze per nome
+	 */
+	private void collega(int stanza, Direzione d, String uscita, Map<String, Integer> id)
+	{
+		int i = stanza * DIREZIONI + d.ordinal();
+		Integer l = links.get(chiave(uscita));
+		if(l == null) destinazioni[i] = id.getOrDefault(chiave(uscita), NESSUNA);
+		else
+		{
+			passaggi[i] = l;
+			destinazioni[i] = (arrivi[l] == stanza) ? partenze[l] : arrivi[l];
+		}
+	}
+
+	/*
+	 * Metodo che visita in ampiezza le stanze raggiungibili da una stanza senza attraversare link chiusi.
+	 * Il risultato  l'albero dei percorsi piu brevi: per ogni stanza raggiunta contiene la stanza precedente
+	 * moltiplicata per 4 piu l'ordinale della direzione presa per arrivarci, NESSUNA per le stanze non raggiungibili.
+	 * La stanza di partenza punta a se stessa.
+	 * 
+	 * @param	da		il numero della stanza di partenza
+	 * @param	chiusi	i link chiusi in questo momento della partita
+	 * @return			l'albero dei percorsi dalla stanza di partenza
+	 */
+	int[] visita(int da, BitSet chiusi)
+	{
+		int[] albero = new int[stanze.length];
+		Arrays.fill(albero, NESSUNA);
+		int[] coda = new int[stanze.length];
+		int testa = 0, fine = 0;
+		albero[da] = da * DIREZIONI;
+		coda[fine++] = da;
+		while(testa < fine)
+		{
+			int s = coda[testa++];
+			for(int d = 0; d < DIREZIONI; d++)
+			{
+				int i = s * DIREZIONI + d, a = destinazioni[i], l = passaggi[i];
+				if(a == NESSUNA || albero[a] != NESSUNA || (l != NESSUNA && chiusi.get(l))) continue;
+				albero[a] = i;
+				coda[fine++] = a;
+			}
+		}
+		return albero;
+	}
+	
+	/*
+	 * Metodo che ricava da un albero calcolato con {@link #visita(int, BitSet)} le direzioni da prendere per arrivare in una stanza.
+	 * 
+	 * @param	albero	l'albero dei percorsi
+	 * @param	a		il numero della stanza di arrivo
+	 * @return			le direzioni da prendere in ordine, null se la stanza non  raggiungibile
+	 */
+	static List<Direzione> percorso(int[] albero, int a)
+	{
+		if(albero[a] == NESSUNA) return null;
+		List<Direzione> percorso = new ArrayList<>();
+		Direzione[] direzioni = Direzione.values();
+		for(int s = a; albero[s] / DIREZIONI != s; s = albero[s] / DIREZIONI) percorso.add(direzioni[albero[s] % DIREZIONI]);
+		Collections.reverse(percorso);
+		return percorso;
+	}
+	
+	/*
+	 * Metodo che normalizza un nome come fanno gli indici del mondo.
+	 */
+	private static String chiave(String nome) { return nome.toLowerCase(); }
+
+	/*
+	 * Getter della stanza in cui si arriva uscendo da una stanza in una direzione.
+	 *
+	 * @param	stanza	il numero della stanza
+	 * @param	d		la direzione
+	 * @return			il numero della stanza di arrivo, NESSUNA se in quella direzione non c' niente
+	 */
+	int getDestinazione(int stanza, Direzione d) { return destinazioni[stanza * DIREZIONI + d.ordinal()]; }
+
+	/*
+	 * Getter del link attraverso cui si esce da una stanza in una direzione.
+	 *
+	 * @param	stanza	il numero della stanza
+	 * @param	d		la direzione
+	 * @return			il numero del link, NESSUNA se l'uscita porta direttamente a una stanza
+	 */
+	int getPassaggio(int stanza, Direzione d) { return passaggi[stanza * DIREZIONI + d.ordinal()]; }
+
+	/*
+	 * Getter del numero di un link dal nome.
+	 *
+	 * @param	nome	il nome del link
+	 * @return			il numero del link, NESSUNA se il grafo non lo contiene
+	 */
+	int getLink(String nome) { return links.getOrDefault(chiave(nome), NESSUNA); }
+
+	/*
+	 * Getter del nome di una stanza dal numero.
+	 */
+	String getNome(int stanza) { return stanze[stanza]; }
+
+	/*
+	 * Getter del numero di stanze.
+	 */
+	int getStanze() { return stanze.length; }
+
+	/*
+	 * Getter dello stato iniziale dei link: una copia, su cui il mondo applica i cambiamenti della partita.
+	 */
+	BitSet getChiusi() { return (BitSet) chiusi.clone(); }
+
+	/*
+	 * Metodo che dice se un link  chiuso all'inizio della partita.
+	 *
+	 * @param	link	il numero del link
+	 */
+	boolean isChiuso(int link) { return chiusi.get(link); }
+}
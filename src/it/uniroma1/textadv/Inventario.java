@@ -16,4 +16,9 @@ public interface Inventario
 	 * Setter dello stato dell'oggetto (visibile o no nella stanza)
 	 */
 	void setVisibile(boolean b); 
+	
+	/*
+	 * Getter delle capacit dell'oggetto, vedi {@link Capacita}
+	 */
+	int getCapacita();
 }
@@ -2,40 +2,56 @@ package it.uniroma1.textadv;
 
 /*
  * Classe che identifica un link (passaggio), l'elemento usato per spostarsi da una stanza ad un altra.
- * Dotato di un nome, una destinazione, un campo per determinare se chiuso o no e un campo per determinare l'oggetto utile ad aprirlo.
+ * Dotato di un nome, le due stanze che collega, un campo per determinare se chiuso o no e un campo per determinare l'oggetto utile ad aprirlo.
+ * Le stanze collegate non cambiano mai: da una delle due si arriva sempre nell'altra, qualunque strada abbia fatto il giocatore.
+ * Un link senza stanza di partenza porta nella sua stanza di arrivo da qualunque stanza lo contenga; dove porta un link lo calcola il {@link Grafo}.
  * 
  * @author Valerio Mesiti
  */
 public class Link {
 
-	private String nome;
-	private String destinazione;
-	protected boolean chiusa;
+	private final String nome;
+	private final String partenza;
+	private final String arrivo;
+	private boolean chiusa;
 	private String util = "";
+	private StatoMondo stato;
+	private int numero = StatoMondo.NESSUNA;
 	
 	/*
 	 * Costruttore.
 	 * 
-	 * @param	nome			nome del link
-	 * @param	destinazione	dove porta il link
-	 * @param	chiusa			stato del link (aperto/chiuso)
+	 * @param	nome		nome del link
+	 * @param	partenza	la stanza da cui parte il link
+	 * @param	arrivo		la stanza in cui porta il link
+	 * @param	chiusa		stato del link (aperto/chiuso)
 	 */
-	public Link(String nome, String destinazione, boolean chiusa) 
+	public Link(String nome, String partenza, String arrivo, boolean chiusa) 
 	{
 		this.nome = nome;
-		this.destinazione = destinazione;
+		this.partenza = partenza;
+		this.arrivo = arrivo;
 		this.chiusa = chiusa;
 	}
 	
 	/*
-	 * Getter della destinazione
+	 * Costruttore di un link che porta direttamente in una stanza.
+	 * 
+	 * @param	nome			nome del link
+	 * @param	destinazione	dove porta il link
+	 * @param	chiusa			stato del link (aperto/chiuso)
+	 */
+	public Link(String nome, String destinazione, boolean chiusa) { this(nome, null, destinazione, chiusa); }
+	
+	/*
+	 * Getter della stanza di partenza, null se il link porta direttamente in una stanza
 	 */
-	public String getDestinazione() { return destinazione; }
+	public String getPartenza() { return partenza; }
 	
 	/*
-	 * Setter della destinazione
+	 * Getter della stanza di arrivo
 	 */
-	public void setDestinazione(String destinazione) { this.destinazione = destinazione; }
+	public String getArrivo() { return arrivo; }
 	
 	/*
 	 * Getter del nome
@@ -45,22 +61,46 @@ public class Link {
 	/*
 	 * Metodo che permette l'apertura di un link
 	 */
-	protected String apri() { chiusa = false; return "Aperta!"; }
+	protected String apri() { setChiusa(false); return "Aperta!"; }
 	
 	/*
 	 * Getter dello stato del link
 	 */
-	public boolean getChiusa() { return chiusa; }
+	public boolean getChiusa() { return (stato == null) ? chiusa : chiusa ^ stato.getLink(numero); }
 	
 	/*
 	 * Setter dello stato del link
 	 */
-	public void setChiusa(boolean chiusa) { this.chiusa = chiusa; }
+	public void setChiusa(boolean chiusa) 
+	{ 
+		if(stato == null) this.chiusa = chiusa;
+		else stato.setLink(numero, chiusa != this.chiusa); 
+	}
+	
+	/*
+	 * Getter dello stato con cui il link  entrato nel mondo, quello che il grafo conosce.
+	 */
+	boolean getChiusaIniziale() { return chiusa; }
+	
+	/*
+	 * Setter dello stato del mondo in cui il link entra: da qui in poi la sua apertura e il suo utensile sono tenuti nello stato,
+	 * da cui il mondo la legge per calcolare i percorsi.
+	 * 
+	 * @param	stato	lo stato della partita
+	 * @param	numero	il numero del link nello stato e nel grafo
+	 */
+	void setStato(StatoMondo stato, int numero) 
+	{ 
+		chiusa = getChiusa();
+		util = getUtil();
+		this.stato = stato; 
+		this.numero = numero; 
+	}
 	
 	/*
 	 * metodo che permette di avere una descrizione del link guardandolo
 	 */
-	public String guarda() { return "Da questa parte "+destinazione+" !"; }
+	public String guarda() { return "Da questa parte "+arrivo+" !"; }
 	
 	/*
 	 * Override del metodo toString
@@ -71,12 +111,16 @@ public class Link {
 	/*
 	 * Getter dell'oggetto utile ad aprire il link
 	 */
-	public String getUtil() { return util; }
+	public String getUtil() { return (stato == null) ? util : stato.getUtil(numero, util); }
 	
 	/*
 	 * Setter dell'oggetto utile ad aprire il link
 	 */
-	public void setUtil(String util) { this.util = util; }
+	public void setUtil(String util) 
+	{ 
+		if(stato == null) this.util = util;
+		else stato.setUtil(numero, util.equals(this.util) ? null : util); 
+	}
 	
 	/*
 	 * Classe annidata che identifica il tipo di link "Botola".
@@ -85,10 +129,10 @@ public class Link {
 	 */
 	public static class Botola extends Link {
 		
-		public Botola(String name, String d) { super(name, d, true); }
+		public Botola(String name, String partenza, String arrivo) { super(name, partenza, arrivo, true); }
 		
 		@Override
-		public String guarda() { return (chiusa) ? "Una botola chiusa" : "Una botola aperta"; }
+		public String guarda() { return (getChiusa()) ? "Una botola chiusa" : "Una botola aperta"; }
 	}
 	
 	/*
@@ -98,10 +142,10 @@ public class Link {
 	 */
 	public static class Porta extends Link {
 		
-		public Porta(String name, String d) { super(name, d, true); }
+		public Porta(String name, String partenza, String arrivo) { super(name, partenza, arrivo, true); }
 		
 		@Override
-		public String guarda() { return (chiusa) ? "Una porta chiusa" : "Una porta aperta"; }
+		public String guarda() { return (getChiusa()) ? "Una porta chiusa" : "Una porta aperta"; }
 	}
 	
 	/*
@@ -111,7 +155,7 @@ public class Link {
 	 */
 	public static class Bus extends Link {
 
-		public Bus(String name, String d) { super(name, d, false); }
+		public Bus(String name, String partenza, String arrivo) { super(name, partenza, arrivo, false); }
 		
 		@Override
 		public String guarda() { return "una navetta!"; }
@@ -124,10 +168,10 @@ public class Link {
 	 */
 	public static class Treno extends Link {
 
-		public Treno(String name, String d) { super(name, d, true); }
+		public Treno(String name, String partenza, String arrivo) { super(name, partenza, arrivo, true); }
 		
 		@Override
-		public String guarda() { return (chiusa) ? "Non puoi partire senza biglietto!" : "un treno!"; }
+		public String guarda() { return (getChiusa()) ? "Non puoi partire senza biglietto!" : "un treno!"; }
 	}
 	
 	/*
@@ -137,7 +181,7 @@ public class Link {
 	 */
 	public static class Teletrasporto extends Link {
 
-		public Teletrasporto(String name, String d) { super(name, d, false); }
+		public Teletrasporto(String name, String partenza, String arrivo) { super(name, partenza, arrivo, false); }
 		
 		@Override
 		public String guarda() { return "un teletrasporto, chissa dove porta?"; }
@@ -0,0 +1,288 @@
+package it.uniroma1.textadv;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Classe che raccoglie le metriche del motore: per ogni verbo il numero di comandi riusciti, rifiutati e interrotti da un'eccezione,
+ * il tempo totale e massimo e un istogramma delle latenze, e per ogni fase del caricamento di un mondo quante volte  stata eseguita e quanto  durata.
+ * L'istogramma ha caselle log-lineari: ogni potenza di due di nanosecondi  divisa in {@link #SOTTO} caselle,
+ * cosi un percentile si legge scorrendo poche centinaia di contatori, con un errore massimo di un ottavo.
+ * Tutti i contatori di un verbo sono celle di un {@link AtomicLongArray} allocato alla creazione,
+ * quindi registrare un comando non alloca nulla ed  sicuro da piu thread.
+ * Le metriche sono spente finche non vengono attivate con {@link #attiva()}: a quel punto il motore registra ogni comando
+ * e il caricamento dei mondi ogni fase; si leggono con {@link #getRapporto()}, su file con {@link #scrivi(Path)} o via JMX con {@link #esponi()}.
+ *
+ * @author Valerio Mesiti
+ */
+public class Metriche implements MetricheMBean {
+
+	/*
+	 * Nome con cui le metriche vengono registrate sul server JMX della piattaforma.
+	 */
+	public static final String NOME_JMX = "it.uniroma1.textadv:type=Metriche";
+
+	/*
+	 * Verbo sotto cui vengono registrati i comandi vuoti o non riconosciuti.
+	 */
+	public static final String ALTRO = "?";
+
+	private static final int BIT_SOTTO = 3;
+	private static final int SOTTO = 1 << BIT_SOTTO;
+	private static final int CASELLE = (64 - BIT_SOTTO) * SOTTO;
+
+	private static final int TEMPO = 3;
+	private static final int MASSIMO = 4;
+	private static final int CONTATORI = 5;
+
+	private static volatile Metriche attive;
+
+	private final String[] verbi;
+	private final Map<String, Integer> indici = new HashMap<>();
+	private final AtomicLongArray contatori;
+	private final AtomicLongArray caselle;
+	private final Map<String, long[]> fasi = new LinkedHashMap<>();
+
+	/*
+	 * Esito di un comando.
+	 *
+	 * @author Valerio Mesiti
+	 */
+	public enum Esito
+	{
+		/*
+		 * Il comando  stato eseguito.
+		 */
+		RIUSCITO,
+
+		/*
+		 * Il motore ha risposto con un errore (verbo sconosciuto, elemento assente, azione non consentita).
+		 */
+		RIFIUTATO,
+
+		/*
+		 * Il comando  stato interrotto da un'eccezione.
+		 */
+		ERRORE
+	}
+
+	/*
+	 * Costruttore.
+	 *
+	 * @param	verbi	i verbi da misurare separatamente, a cui si aggiunge {@link #ALTRO}
+	 */
+	public Metriche(List<String> verbi)
+	{
+		this.verbi = new String[verbi.size() + 1];
+		for(int v = 0; v < verbi.size(); v++) { this.verbi[v] = verbi.get(v); indici.put(verbi.get(v), v); }
+		this.verbi[verbi.size()] = ALTRO;
+		contatori = new AtomicLongArray(this.verbi.length * CONTATORI);
+		caselle = new AtomicLongArray(this.verbi.length * CASELLE);
+	}
+
+	/*
+	 * Metodo che attiva le metriche del processo, sui verbi di {@link Gioco#getComandi()}.
+	 *
+	 * @return	le metriche attive, create alla prima chiamata
+	 */
+	public static synchronized Metriche attiva()
+	{
+		if(attive == null) attive = new Metriche(Gioco.getComandi());
+		return attive;
+	}
+
+	/*
+	 * Metodo che spegne le metriche: i comandi e i caricamenti successivi non vengono piu registrati.
+	 */
+	public static synchronized void disattiva() { attive = null; }
+
+	/*
+	 * Getter delle metriche attive, null se sono spente.
+	 */
+	public static Metriche getAttive() { return attive; }
+
+	/*
+	 * Metodo che chiude una fase del caricamento, se le metriche sono attive, e restituisce l'istante in cui inizia la successiva.
+	 *
+	 * @param	nome	il nome della fase
+	 * @param	inizio	l'istante in cui  iniziata la fase, da {@link System#nanoTime()}
+	 * @return			l'istante attuale
+	 */
+	static long fase(String nome, long inizio)
+	{
+		long fine = System.nanoTime();
+		Metriche m = attive;
+		if(m != null) m.registraFase(nome, fine - inizio);
+		return fine;
+	}
+
+	/*
+	 * Metodo che registra un comando; non alloca memoria.
+	 *
+	 * @param	verbo		il verbo del comando, null o sconosciuto per {@link #ALTRO}
+	 * @param	esito		l'esito del comando
+	 * @param	nanosecondi	la durata del comando
+	 */
+	public void registra(String verbo, Esito esito, long nanosecondi)
+	{
+		Integer indice = (verbo == null) ? null : indici.get(verbo);
+		int v = (indice == null) ? verbi.length - 1 : indice;
+		contatori.incrementAndGet(v * CONTATORI + esito.ordinal());
+		contatori.addAndGet(v * CONTATORI + TEMPO, nanosecondi);
+		contatori.accumulateAndGet(v * CONTATORI + MASSIMO, nanosecondi, Math::max);
+		caselle.incrementAndGet(v * CASELLE + casella(nanosecondi));
+	}
+
+	/*
+	 * Metodo che registra la durata di una fase del caricamento.
+	 *
+	 * @param	nome		il nome della fase
+	 * @param	nanosecondi	la durata della fase
+	 */
+	public void registraFase(String nome, long nanosecondi)
+	{
+		synchronized(fasi)
+		{
+			long[] fase = fasi.computeIfAbsent(nome, n -> new long[3]);
+			fase[0]++;
+			fase[1] += nanosecondi;
+			fase[2] = Math.max(fase[2], nanosecondi);
+		}
+	}
+
+	/*
+	 * Metodo che restituisce la casella dell'istogramma di una durata: le durate sotto {@link #SOTTO} nanosecondi hanno una casella ciascuna,
+	 * le altre cadono in una delle {@link #SOTTO} caselle della loro potenza di due.
+	 */
+	private static int casella(long nanosecondi)
+	{
+		if(nanosecondi < SOTTO) return (int) Math.max(nanosecondi, 0);
+		int esponente = 63 - Long.numberOfLeadingZeros(nanosecondi);
+		return (esponente - BIT_SOTTO + 1) * SOTTO + (int) ((nanosecondi >>> (esponente - BIT_SOTTO)) & (SOTTO - 1));
+	}
+
+	/*
+	 * Metodo che restituisce la durata piu lunga che cade in una casella dell'istogramma.
+	 */
+	private static long limite(int casella)
+	{
+		if(casella < SOTTO) return casella;
+		int spostamento = casella / SOTTO - 1;
+		return ((long) (SOTTO + casella % SOTTO) << spostamento) + (1L << spostamento) - 1;
+	}
+
+	/*
+	 * Metodo che restituisce il numero di comandi di un verbo con un certo esito.
+	 *
+	 * @param	verbo	il verbo, {@link #ALTRO} per i comandi non riconosciuti
+	 * @param	esito	l'esito dei comandi da contare
+	 * @return			il numero di comandi, 0 se il verbo non  misurato
+	 */
+	public long getComandi(String verbo, Esito esito)
+	{
+		int v = indice(verbo);
+		return (v < 0) ? 0 : contatori.get(v * CONTATORI + esito.ordinal());
+	}
+
+	@Override
+	public long percentile(String verbo, double quantile)
+	{
+		int v = indice(verbo);
+		if(v < 0) return 0;
+		long totale = 0;
+		for(int c = 0; c < CASELLE; c++) totale += caselle.get(v * CASELLE + c);
+		if(totale == 0) return 0;
+		long posizione = Math.max(1, (long) Math.ceil(quantile * totale));
+		for(int c = 0; c < CASELLE; c++)
+			if((posizione -= caselle.get(v * CASELLE + c)) <= 0) return Math.min(limite(c), contatori.get(v * CONTATORI + MASSIMO));
+		return contatori.get(v * CONTATORI + MASSIMO);
+	}
+
+	/*
+	 * Metodo che restituisce la posizione di un verbo tra quelli misurati, -1 se non  misurato.
+	 */
+	private int indice(String verbo)
+	{
+		if(ALTRO.equals(verbo)) return verbi.length - 1;
+		Integer indice = indici.get(verbo);
+		return (indice == null) ? -1 : indice;
+	}
+
+	@Override
+	public long getComandi() { return somma(Esito.RIUSCITO) + somma(Esito.RIFIUTATO) + somma(Esito.ERRORE); }
+
+	@Override
+	public long getRifiutati() { return somma(Esito.RIFIUTATO); }
+
+	@Override
+	public long getErrori() { return somma(Esito.ERRORE); }
+
+	/*
+	 * Metodo che somma i comandi di tutti i verbi con un certo esito.
+	 */
+	private long somma(Esito esito)
+	{
+		long somma = 0;
+		for(int v = 0; v < verbi.length; v++) somma += contatori.get(v * CONTATORI + esito.ordinal());
+		return somma;
+	}
+
+	@Override
+	public String getRapporto()
+	{
+		StringBuilder rapporto = new StringBuilder(String.format("%-12s %10s %10s %10s %8s %10s %10s %10s %10s %10s%n",
+				"verbo", "comandi", "riusciti", "rifiutati", "errori", "media us", "p50 us", "p90 us", "p99 us", "max us"));
+		for(int v = 0; v < verbi.length; v++)
+		{
+			long riusciti = contatori.get(v * CONTATORI), rifiutati = contatori.get(v * CONTATORI + 1), errori = contatori.get(v * CONTATORI + 2);
+			long comandi = riusciti + rifiutati + errori;
+			if(comandi == 0) continue;
+			rapporto.append(String.format("%-12s %10d %10d %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", verbi[v], comandi, riusciti, rifiutati, errori,
+					contatori.get(v * CONTATORI + TEMPO) / 1e3 / comandi, percentile(verbi[v], 0.5) / 1e3, percentile(verbi[v], 0.9) / 1e3,
+					percentile(verbi[v], 0.99) / 1e3, contatori.get(v * CONTATORI + MASSIMO) / 1e3));
+		}
+		synchronized(fasi)
+		{
+			if(!fasi.isEmpty()) rapporto.append(String.format("%n%-24s %8s %12s %12s%n", "fase", "volte", "totale ms", "max ms"));
+			for(Map.Entry<String, long[]> fase : fasi.entrySet())
+				rapporto.append(String.format("%-24s %8d %12.3f %12.3f%n", fase.getKey(), fase.getValue()[0], fase.getValue()[1] / 1e6, fase.getValue()[2] / 1e6));
+		}
+		return rapporto.toString();
+	}
+
+	@Override
+	public void azzera()
+	{
+		for(int i = 0; i < contatori.length(); i++) contatori.set(i, 0);
+		for(int i = 0; i < caselle.length(); i++) caselle.set(i, 0);
+		synchronized(fasi) { fasi.clear(); }
+	}
+
+	/*
+	 * Metodo che scrive il rapporto su un file di testo, sovrascrivendolo.
+	 *
+	 * @param	file	il path del file
+	 */
+	public void scrivi(Path file) throws IOException { Files.writeString(file, getRapporto()); }
+
+	/*
+	 * Metodo che registra le metriche sul server JMX della piattaforma con il nome {@link #NOME_JMX}, se non ci sono gia.
+	 */
+	public void esponi() throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName nome = new ObjectName(NOME_JMX);
+		if(!server.isRegistered(nome)) server.registerMBean(this, nome);
+	}
+}
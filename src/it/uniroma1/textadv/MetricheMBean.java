@@ -0,0 +1,43 @@
+package it.uniroma1.textadv;
+
+/*
+ * Interfaccia con cui le {@link Metriche} vengono esposte via JMX, con il nome {@link Metriche#NOME_JMX}.
+ *
+ * @author Valerio Mesiti
+ */
+public interface MetricheMBean
+{
+	/*
+	 * Getter del rapporto testuale: una riga per verbo e una per fase di caricamento.
+	 */
+	String getRapporto();
+
+	/*
+	 * Getter del numero di comandi registrati, con qualunque esito.
+	 */
+	long getComandi();
+
+	/*
+	 * Getter del numero di comandi rifiutati dal motore.
+	 */
+	long getRifiutati();
+
+	/*
+	 * Getter del numero di comandi interrotti da un'eccezione.
+	 */
+	long getErrori();
+
+	/*
+	 * Metodo che restituisce un percentile della latenza di un verbo.
+	 *
+	 * @param	verbo		il verbo, "?" per i comandi non riconosciuti
+	 * @param	quantile	il quantile, tra 0 e 1 (es 0.99)
+	 * @return				la latenza in nanosecondi, per eccesso
+	 */
+	long percentile(String verbo, double quantile);
+
+	/*
+	 * Metodo che azzera tutti i contatori e le fasi.
+	 */
+	void azzera();
+}
@@ -0,0 +1,239 @@
+package it.uniroma1.textadv;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+
+import it.uniroma1.textadv.DefinizioneMondo.DefinizioneStanza;
+
+/*
+ * Classe che identifica un modello di mondo condiviso tra piu partite.
+ * Il modello  immutabile: contiene gli elementi letti dal file in un {@link Archivio} a colonne,
+ * con le fabbriche dei tipi gia risolte, e sa dire in quale stanza si trova inizialmente ogni elemento.
+ * La definizione letta dal file non viene conservata, cosi un mondo molto grande occupa solo gli array dell'archivio,
+ * del grafo e dello stato iniziale, piu il risolutore dei nomi.
+ * Ogni partita creata con {@link #nuovaPartita()} parte vuota e istanzia stanze, oggetti, personaggi e link
+ * solo quando vengono toccati per la prima volta; tutto cio che la partita non ha mai toccato resta nel modello.
+ * Avviare una partita costa quindi quanto la stanza di partenza e una copia dello stato iniziale, non quanto l'intero mondo.
+ * 
+ * @author Valerio Mesiti
+ */
+public class ModelloMondo {
+
+	private final String nome;
+	private final String descrizione;
+	private final String start;
+	private final String giocatore;
+	private final Archivio archivio;
+	private final Risolutore risolutore;
+	private final Grafo grafo;
+	private final StatoMondo statoIniziale;
+	
+	/*
+	 * Costruttore: copia la definizione nell'archivio e risolve le fabbriche di tutti i tipi usati,
+	 * cosi eventuali tipi sconosciuti vengono segnalati subito e non durante una partita.
+	 * 
+	 * @param	d	la definizione del mondo
+	 */
+	public ModelloMondo(DefinizioneMondo d) throws ClassNotFoundException, NoSuchMethodException
+	{
+		nome = d.getNome();
+		descrizione = d.getDescrizione();
+		start = d.getStart();
+		giocatore = d.getGiocatore();
+		long inizio = System.nanoTime();
+		archivio = new Archivio(d);
+		statoIniziale = new StatoMondo(archivio.getNumeroLinks(), archivio.getNumeroOggetti(), archivio.getNumeroPersonaggi());
+		for(int o = 0; o < archivio.getNumeroOggetti(); o++) if(archivio.getStanzaOggetto(o) != Archivio.NESSUNO) statoIniziale.setLuogo(o, archivio.getStanzaOggetto(o));
+		statoIniziale.condividi();
+		inizio = Metriche.fase("modello.archivio", inizio);
+		risolutore = Risolutore.fromDefinizione(d);
+		BitSet chiusi = new BitSet(archivio.getNumeroLinks());
+		for(int l = 0; l < archivio.getNumeroLinks(); l++) chiusi.set(l, archivio.creaLink(l).getChiusa());
+		grafo = Grafo.fromDefinizione(d, chiusi);
+		Metriche.fase("modello.indici", inizio);
+	}
+	
+	/*
+	 * Metodo che legge il file .game in input e ne crea il modello.
+	 * 
+	 * @param	fileName	il path del file contenente il mondo di gioco.
+	 * @return				il modello del mondo
+	 */
+	public static ModelloMondo fromFile(Path fileName) throws IOException, ClassNotFoundException, NoSuchMethodException 
+	{ 
+		long inizio = System.nanoTime();
+		DefinizioneMondo d = DefinizioneMondo.fromFile(fileName);
+		Metriche.fase("modello.lettura", inizio);
+		return new ModelloMondo(d); 
+	}
+	
+	/*
+	 * Metodo che crea una nuova partita sul modello.
+	 * 
+	 * @return	un mondo di gioco che istanzia i suoi elementi solo quando servono
+	 */
+	public Mondo nuovaPartita() { return Mondo.fromModello(this); }
+	
+	public String getNome() { return nome; }
+	
+	public String getDescrizione() { return descrizione; }
+	
+	/*
+	 * Getter del nome della stanza di partenza.
+	 */
+	public String getStart() { return start; }
+	
+	/*
+	 * Getter del nome del giocatore, null se il mondo non ne ha uno.
+	 */
+	public String getGiocatore() { return giocatore; }
+	
+	/*
+	 * Getter del numero di oggetti, personaggi e link del modello, le righe dei rispettivi blocchi.
+	 */
+	public int getNumeroOggetti() { return archivio.getNumeroOggetti(); }
+	
+	public int getNumeroPersonaggi() { return archivio.getNumeroPersonaggi(); }
+	
+	public int getNumeroLinks() { return archivio.getNumeroLinks(); }
+	
+	/*
+	 * Getter di una riga del blocco [objects], nella forma {nome, tipo, parametri...}.
+	 * 
+	 * @param	numero	il numero dell'oggetto
+	 * @return			una nuova copia della riga
+	 */
+	public String[] getRigaOggetto(int numero) { return archivio.getRigaOggetto(numero); }
+	
+	/*
+	 * Getter di una riga del blocco [characters], nella forma {nome, tipo, inventario...}.
+	 */
+	public String[] getRigaPersonaggio(int numero) { return archivio.getRigaPersonaggio(numero); }
+	
+	/*
+	 * Getter di una riga del blocco [links], nella forma {nome, tipo, partenza, arrivo}.
+	 */
+	public String[] getRigaLink(int numero) { return archivio.getRigaLink(numero); }
+	
+	/*
+	 * Getter del risolutore dei nomi, condiviso da tutte le partite del modello.
+	 */
+	Risolutore getRisolutore() { return risolutore; }
+	
+	/*
+	 * Getter del grafo della mappa, condiviso da tutte le partite del modello.
+	 */
+	Grafo getGrafo() { return grafo; }
+	
+	/*
+	 * Metodo che crea lo stato di una nuova partita: una copia dello stato iniziale del mondo,
+	 * in cui ogni oggetto  nella stanza che lo elenca per prima.
+	 */
+	StatoMondo nuovoStato() { return statoIniziale.copia(); }
+	
+	/*
+	 * Getter dello stato iniziale del mondo, condiviso da tutte le partite del modello e mai modificato.
+	 */
+	StatoMondo getStatoIniziale() { return statoIniziale; }
+	
+	/*
+	 * Metodo che istanzia un oggetto del modello.
+	 * 
+	 * @param	nome	il nome dell'oggetto
+	 * @return			un nuovo oggetto, null se il modello non lo contiene
+	 */
+	Oggetto creaOggetto(String nome) { int o = archivio.cercaOggetto(nome); return (o == Archivio.NESSUNO) ? null : archivio.creaOggetto(o); }
+	
+	/*
+	 * Getter del numero di un oggetto, la sua riga nel blocco [objects].
+	 * 
+	 * @param	nome	il nome dell'oggetto
+	 * @return			il numero dell'oggetto, {@link StatoMondo#NESSUNA} se il modello non lo contiene
+	 */
+	int getNumeroOggetto(String nome) { return archivio.cercaOggetto(nome); }
+	
+	/*
+	 * Getter del nome di un oggetto dal suo numero.
+	 */
+	String getNomeOggetto(int numero) { return archivio.getNomeOggetto(numero); }
+	
+	/*
+	 * Metodo che istanzia un personaggio del modello.
+	 * 
+	 * @param	nome	il nome del personaggio
+	 * @return			un nuovo personaggio, null se il modello non lo contiene
+	 */
+	Character creaPersonaggio(String nome) { int p = archivio.cercaPersonaggio(nome); return (p == Archivio.NESSUNO) ? null : archivio.creaPersonaggio(p); }
+	
+	/*
+	 * Getter del numero di un personaggio, la sua riga nel blocco [characters].
+	 * 
+	 * @param	nome	il nome del personaggio
+	 * @return			il numero del personaggio, {@link StatoMondo#NESSUNA} se il modello non lo contiene
+	 */
+	int getNumeroPersonaggio(String nome) { return archivio.cercaPersonaggio(nome); }
+	
+	/*
+	 * Getter del nome di un personaggio dal suo numero.
+	 */
+	String getNomePersonaggio(int numero) { return archivio.getNomePersonaggio(numero); }
+	
+	/*
+	 * Metodo che istanzia un link del modello, con l'utensile che serve ad aprirlo.
+	 * 
+	 * @param	nome	il nome del link
+	 * @return			un nuovo link, null se il modello non lo contiene
+	 */
+	Link creaLink(String nome) { int l = archivio.cercaLink(nome); return (l == Archivio.NESSUNO) ? null : archivio.creaLink(l); }
+	
+	/*
+	 * Getter del numero di un link, la sua riga nel blocco [links], uguale al suo numero nel grafo.
+	 * 
+	 * @param	nome	il nome del link
+	 * @return			il numero del link, {@link StatoMondo#NESSUNA} se il modello non lo contiene
+	 */
+	int getNumeroLink(String nome) { return archivio.cercaLink(nome); }
+	
+	/*
+	 * Getter della definizione di una stanza.
+	 * 
+	 * @param	nome	il nome della stanza
+	 * @return			una nuova definizione della stanza, null se il modello non la contiene
+	 */
+	DefinizioneStanza getStanza(String nome) { int s = archivio.cercaStanza(nome); return (s == Archivio.NESSUNO) ? null : archivio.getStanza(s); }
+	
+	/*
+	 * Getter della stanza in cui si trova inizialmente un personaggio.
+	 * 
+	 * @param	nome	il nome del personaggio
+	 * @return			il nome della stanza, null se il personaggio non  in nessuna stanza all'inizio
+	 */
+	String getStanzaPersonaggio(String nome) 
+	{ 
+		int p = archivio.cercaPersonaggio(nome);
+		int s = (p == Archivio.NESSUNO) ? Archivio.NESSUNO : archivio.getStanzaPersonaggio(p);
+		return (s == Archivio.NESSUNO) ? null : archivio.getNomeStanza(s); 
+	}
+	
+	/*
+	 * Getter dei nomi di tutte le stanze del modello, una per nome, nell'ordine della definizione.
+	 */
+	Collection<String> getNomiStanze() { return archivio.getNomiStanze(); }
+	
+	/*
+	 * Getter dei nomi di tutti gli oggetti del modello.
+	 */
+	Collection<String> getNomiOggetti() { return archivio.getNomiOggetti(); }
+	
+	/*
+	 * Getter dei nomi di tutti i personaggi del modello.
+	 */
+	Collection<String> getNomiPersonaggi() { return archivio.getNomiPersonaggi(); }
+	
+	/*
+	 * Getter dei nomi di tutti i link del modello.
+	 */
+	Collection<String> getNomiLinks() { return archivio.getNomiLinks(); }
+}
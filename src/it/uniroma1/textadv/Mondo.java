@@ -1,65 +1,89 @@
 package it.uniroma1.textadv;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+import it.uniroma1.textadv.DefinizioneMondo.DefinizioneStanza;
 
 /*
  * Classe che identifica il mondo di gioco: 
  * Un insieme di stanze dotato di un nome, una descrizione testuale, un pointer per ricordare in che punto siamo della mappa
  * e degli elenchi che memorizzano gli oggetti, i link e i personaggi presenti nel gioco.
+ * Accanto agli elenchi il mondo mantiene degli indici per nome (senza distinzione tra maiuscole e minuscole),
+ * cosi che ogni ricerca per nome costi O(1) indipendentemente dalla grandezza della mappa.
+ * Lo stato mutabile della partita (link aperti, visibilit e stato degli oggetti, umore dei personaggi e stanza in cui si trova ogni oggetto)
+ *  tenuto in un unico {@link StatoMondo}, da cui gli elementi leggono i propri valori; le liste di oggetti delle stanze ne seguono i cambiamenti.
+ * Per gli spostamenti la mappa  compilata in un {@link Grafo} di interi, letto insieme ai bit dei link dello stato.
+ * Sul grafo il mondo calcola i percorsi piu brevi tra le stanze:
+ * gli alberi dei percorsi delle ultime stanze di partenza restano in memoria finch non si apre o si chiude un link.
+ * Un mondo creato da un {@link ModelloMondo} istanzia i suoi elementi solo alla prima ricerca:
+ * fino ad allora restano nel modello condiviso con le altre partite.
+ * Ogni partita ha un proprio generatore di numeri casuali con un seme, da cui i personaggi scelgono le risposte:
+ * fissato il seme, la stessa sequenza di comandi produce sempre la stessa partita, come serve a un {@link Diario}.
  */
 public class Mondo {
 	
+	private static final int SOGLIA_PARALLELA = 10_000;
+	private static final int BLOCCO = 4096;
+	private static final int ALBERI = 8;
+	
 	private Mondo() {}
 
 	private Giocatore player;
 	private String name;
 	private String description;
 	private Stanza posizione;
+	private Uscita output = Uscita.console();
 	private List<Stanza> map = new ArrayList<>();
 	private List<Oggetto> items = new ArrayList<>();
 	private List<Link> links = new ArrayList<>();
 	private List<Character> characters = new ArrayList<>();
+	private Map<String, Stanza> indiceStanze = new HashMap<>();
+	private Map<String, Oggetto> indiceOggetti = new HashMap<>();
+	private Map<String, Link> indiceLinks = new HashMap<>();
+	private Map<String, Character> indicePersonaggi = new HashMap<>();
+	private Map<Character, Stanza> posizionePersonaggi = new HashMap<>();
+	private ModelloMondo modello;
+	private boolean completo = true;
+	private Risolutore risolutore;
+	private Grafo grafo;
+	private StatoMondo stato = new StatoMondo(0, 0, 0);
+	private StatoMondo iniziale;
+	private long casuale = ThreadLocalRandom.current().nextLong();
+	private Diario diario;
+	private int versioneAlberi;
+	private Map<Integer, int[]> alberi = new LinkedHashMap<>(ALBERI, 0.75f, true) 
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, int[]> piuVecchio) { return size() > ALBERI; }
+	};
 	
 	/*
 	 * Metodo che carica e istanzia il mondo di gioco dal file specificato in input.
+	 * Se le {@link Metriche} sono attive, la lettura del file viene registrata come fase "mondo.lettura".
 	 * 
 	 * @param	fileName	il path del file contenente il mondo di gioco.
 	 * @return				un mondo di gioco completo
 	 */
 	private static Mondo fromFile(Path fileName) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException 
 	{
-		Mondo m = new Mondo();
-		String titolo = "", nome = "";
-		String[] array = Files.readString(fileName).replaceAll("\\]", "").substring(1).split("\\[");
-		Arrays.sort(array, Comparator.naturalOrder());
-		String start = m.creazioneMondo(array[array.length-1]);
-		array = Arrays.copyOfRange(array, 0, array.length-1);
-		
-		for(String s : array)
-		{
-			String[] blocco = s.split("\r\n");
-			if(blocco[0].contains(":")) { String[] etichetta = blocco[0].split(":"); titolo = etichetta[0]; nome = etichetta[1]; }
-			else titolo = blocco[0];
-			String[] settings = Arrays.copyOfRange(blocco, 1, blocco.length);
-			
-			switch(titolo) 
-			{
-				case "characters": m.creazionePersonaggi(settings); break;
-				case "links": m.creazioneLinks(settings); break;
-				case "objects": m.creazioneOggetti(settings); break;
-				case "player": m.setPlayer(Giocatore.getInstance(settings[0].split("\t")[0])); break;
-				case "room": m.addRoom(m.creazioneStanza(StanzaBuilder.newBuilder(nome), settings)); break;
-			}
-		}
-		m.setPosizione(m.getStanza(start));
-		return m;
+		long inizio = System.nanoTime();
+		DefinizioneMondo d = DefinizioneMondo.fromFile(fileName);
+		Metriche.fase("mondo.lettura", inizio);
+		return fromDefinizione(d);
 	}
 	
 	/*
@@ -70,160 +94,381 @@ public class Mondo {
 	public static Mondo fromFile(String fileName) throws IOException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException, ClassNotFoundException { return fromFile(Path.of(fileName)); }
 	
 	/*
-	 * Metodo che gestisce la prima parte di file, quella dell'etichetta [world]
-	 * aggiunge al mondo che stiamo creando il nome e la descrizione e la stanza di partenza.
+	 * Metodo che carica il mondo di gioco da un file precompilato con {@link Snapshot#compila(Path, Path)},
+	 * senza passare dalla lettura del testo del file .game.
+	 * 
+	 * @param	fileName	il path del file precompilato
+	 * @return				un mondo di gioco completo
+	 */
+	public static Mondo fromSnapshot(Path fileName) throws IOException, ClassNotFoundException, NoSuchMethodException { return fromDefinizione(Snapshot.leggi(fileName)); }
+	
+	/*
+	 * Metodo che istanzia il mondo di gioco a partire dalla sua definizione.
+	 * I blocchi [links], [objects] e [characters] sono indipendenti tra loro e vengono istanziati in contemporanea,
+	 * divisi in parti di BLOCCO righe, sul pool fork-join comune; solo dopo vengono costruite,
+	 * sempre in parallelo, le stanze, che fanno riferimento a tutti gli altri elementi.
+	 * Gli elementi vengono poi aggiunti al mondo nell'ordine del file, cosi il risultato non dipende dal parallelismo.
+	 * I mondi con meno di SOGLIA_PARALLELA elementi vengono costruiti interamente nel thread chiamante.
+	 * Con le {@link Metriche} attive vengono registrate le fasi "mondo.elementi", "mondo.stanze" e "mondo.indici".
 	 * 
-	 * @param	string	il blocco [world]
-	 * @return			la stanza di partenza
+	 * @param	d	la definizione del mondo
+	 * @return		un mondo di gioco completo
 	 */
-	private String creazioneMondo(String string) 
+	public static Mondo fromDefinizione(DefinizioneMondo d) throws ClassNotFoundException, NoSuchMethodException
 	{
-		String start = "";
-		String[] blocco = string.split("\r\n");
-		String[] settings = Arrays.copyOfRange(blocco, 1, blocco.length);
-		setName(blocco[0].split(":")[1]);
+		long inizio = System.nanoTime();
+		Mondo m = new Mondo();
+		m.setName(d.getNome());
+		m.setDescription(d.getDescrizione());
+		m.stato = new StatoMondo(d.getLinks().size(), d.getOggetti().size(), d.getPersonaggi().size());
+		boolean parallelo = d.getLinks().size() + d.getOggetti().size() + d.getPersonaggi().size() + d.getStanze().size() >= SOGLIA_PARALLELA;
 		
-		for (String world : settings)
-		{
-			if(world.startsWith("description")) setDescription(world.replace("description\t", ""));
-			else start = world.replace("start\t", "");
-		}
-		return start;
+		var links = dividi(d.getLinks(), Mondo::creazioneLink, parallelo);
+		var oggetti = dividi(d.getOggetti(), Mondo::creazioneOggetto, parallelo);
+		var personaggi = dividi(d.getPersonaggi(), Mondo::creazionePersonaggio, parallelo);
+		
+		List<Link> ls = unisci(links);
+		utensili(ls, d.getOggetti());
+		for(int i = 0; i < ls.size(); i++) m.addLink(ls.get(i), i);
+		List<Oggetto> items = unisci(oggetti);
+		for(int i = 0; i < items.size(); i++) m.addItem(items.get(i), i);
+		List<Character> cs = unisci(personaggi);
+		for(int i = 0; i < cs.size(); i++) m.addCharacter(cs.get(i), i);
+		inizio = Metriche.fase("mondo.elementi", inizio);
+		for(Stanza s : unisci(dividi(d.getStanze(), stanza -> m.creazioneStanza(StanzaBuilder.newBuilder(stanza.getNome()), stanza), parallelo))) m.addRoom(s);
+		
+		if(d.getGiocatore() != null) m.setPlayer(new Giocatore(d.getGiocatore()));
+		m.setPosizione(m.getStanza(d.getStart()));
+		inizio = Metriche.fase("mondo.stanze", inizio);
+		m.risolutore = Risolutore.fromDefinizione(d);
+		BitSet chiusi = new BitSet(ls.size());
+		for(int i = 0; i < ls.size(); i++) chiusi.set(i, ls.get(i).getChiusaIniziale());
+		m.grafo = Grafo.fromDefinizione(d, chiusi);
+		m.stato.condividi();
+		m.iniziale = m.stato.copia();
+		Metriche.fase("mondo.indici", inizio);
+		return m;
 	}
 	
 	/*
-	 * Metodo che gestisce la parte di file dell'etichetta [room]
-	 * aggiunge al mondo che stiamo creando tutte le stanze che contiene la mappa di gioco,
-	 * utilizzando il builder delle stanze riesce cosi ad aggiungere man mano che scorre il blocco,
-	 * nome, descrizione, oggetti, link e personaggi presenti in quella stanza.
+	 * Metodo che crea una partita sul modello in input: il mondo parte vuoto
+	 * e istanzia stanze ed elementi dal modello man mano che vengono cercati.
 	 * 
-	 * @param	stanza	un builder della stanza
-	 * @param	setting	il blocco [room]
-	 * @return			la stanza costruita
+	 * @param	modello	il modello condiviso del mondo
+	 * @return			un mondo di gioco pronto per giocare
 	 */
-	private Stanza creazioneStanza(StanzaBuilder stanza, String[] settings)
+	static Mondo fromModello(ModelloMondo modello)
 	{
-		String tag = "";
-		String[] oggetti;
-
-		for (String room : settings)
-		{	
-			if(!room.contains("\t")) continue;
-			else
-			{
-				tag = room.split("\t")[0];
-				oggetti = room.split("\t")[1].split(",");
-			}
-			
-			switch(tag)
+		Mondo m = new Mondo();
+		m.modello = modello;
+		m.completo = false;
+		m.risolutore = modello.getRisolutore();
+		m.grafo = modello.getGrafo();
+		m.stato = modello.nuovoStato();
+		m.iniziale = modello.getStatoIniziale();
+		m.setName(modello.getNome());
+		m.setDescription(modello.getDescrizione());
+		if(modello.getGiocatore() != null) m.setPlayer(new Giocatore(modello.getGiocatore()));
+		m.setPosizione(m.getStanza(modello.getStart()));
+		return m;
+	}
+	
+	/*
+	 * Metodo che istanzia tutti gli elementi del modello non ancora toccati dalla partita,
+	 * usato quando viene chiesto l'elenco completo di stanze, oggetti, link o personaggi.
+	 */
+	private void completa()
+	{
+		if(completo) return;
+		modello.getNomiLinks().forEach(this::getLink);
+		modello.getNomiOggetti().forEach(this::getItem);
+		modello.getNomiPersonaggi().forEach(this::getCharacter);
+		modello.getNomiStanze().forEach(this::getStanza);
+		completo = true;
+	}
+	
+	/*
+	 * Interfaccia funzionale che identifica la creazione di un elemento del mondo a partire dalla sua definizione.
+	 */
+	private interface Creazione<R, T> 
+	{
+		T crea(R riga) throws ClassNotFoundException, NoSuchMethodException;
+	}
+	
+	/*
+	 * Metodo che divide le righe di un blocco in parti e ne avvia la creazione.
+	 * 
+	 * @param	righe		le righe del blocco
+	 * @param	c			la creazione da applicare ad ogni riga
+	 * @param	parallelo	se le parti vanno create sul pool fork-join o subito nel thread chiamante
+	 * @return				i compiti che creano le parti, nell'ordine delle righe
+	 */
+	private static <R, T> List<ForkJoinTask<List<T>>> dividi(List<R> righe, Creazione<R, T> c, boolean parallelo)
+	{
+		List<ForkJoinTask<List<T>>> parti = new ArrayList<>();
+		for(int i = 0; i < righe.size(); i += BLOCCO)
+		{
+			List<R> parte = righe.subList(i, Math.min(i+BLOCCO, righe.size()));
+			ForkJoinTask<List<T>> compito = ForkJoinTask.adapt(() -> 
 			{
-				case "description": 
-					stanza.descrizione(oggetti[0]); 
-					break;
-					
-				case "objects": 
-					for (String oggetto : oggetti) stanza.addItem(getItem(oggetto.strip()));
-					break;
-					
-				case "links":
-					for (String link : oggetti) 
-					{
-						String[] g = link.split(":");
-						Link tp = getLink(g[1]);
-						Direzione direzione = Direzione.valueOf(g[0].toLowerCase());
-						
-						if(tp != null) stanza.addLink(direzione, tp);
-						else stanza.addLink(direzione, new Link(g[1], g[1], false));
-					}
-					break;
-					
-				case "characters": 
-					for (String personaggio : oggetti) stanza.addCharacter(getCharacter(personaggio.strip()));
-					break;
-			}
+				List<T> creati = new ArrayList<>(parte.size());
+				for(R riga : parte) creati.add(c.crea(riga));
+				return creati;
+			});
+			if(parallelo) compito.fork();
+			else compito.quietlyInvoke();
+			parti.add(compito);
 		}
-		return stanza.build();
+		return parti;
 	}
 	
 	/*
-	 * Metodo che gestisce la parte di file dell'etichetta [characters]
-	 * aggiunge al mondo che stiamo creando tutti i personaggi che contiene la mappa di gioco,
-	 * usando la reflection e chiamando il costruttore segnalato nel blocco in input riesce cosi
-	 * a dare: nome e inventario a tutti i personaggi da costruire.
+	 * Metodo che attende i compiti avviati da {@link #dividi(List, Creazione, boolean)} e ne unisce i risultati.
 	 * 
-	 * @param	setting	il blocco [characters]
+	 * @param	parti	i compiti da attendere
+	 * @return			gli elementi creati, nell'ordine delle righe
 	 */
-	private void creazionePersonaggi(String[] settings) throws ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	private static <T> List<T> unisci(List<ForkJoinTask<List<T>>> parti) throws ClassNotFoundException, NoSuchMethodException
 	{
-		for (String personaggio : settings)
+		List<T> risultato = new ArrayList<>();
+		try { for(ForkJoinTask<List<T>> parte : parti) risultato.addAll(parte.get()); }
+		catch(InterruptedException e) { Thread.currentThread().interrupt(); throw new IllegalStateException("Caricamento del mondo interrotto", e); }
+		catch(ExecutionException e) 
 		{
-			String[] arraycharacters = formatta(personaggio);
-			Class<?> c = Class.forName("it.uniroma1.textadv.Character$"+arraycharacters[1]);
-			
-			if(arraycharacters.length<3) characters.add((Character) c.getConstructor(String.class).newInstance(arraycharacters[0]));
-			else characters.add((Character) c.getConstructor(String.class, String[].class).newInstance(arraycharacters[0], Arrays.copyOfRange(arraycharacters, 2, arraycharacters.length)));
+			if(e.getCause() instanceof ClassNotFoundException) throw (ClassNotFoundException) e.getCause();
+			if(e.getCause() instanceof NoSuchMethodException) throw (NoSuchMethodException) e.getCause();
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
 		}
+		return risultato;
 	}
 	
 	/*
-	 * Metodo che gestisce la parte di file dell'etichetta [objects]
-	 * aggiunge al mondo che stiamo creando tutti gli oggetti che contiene la mappa di gioco,
-	 * usando la reflection e chiamando il costruttore segnalato nel blocco in input riesce cosi
-	 * a dare: nome e, se  un utensile, oggetto su cui va usato a tutti gli oggetti da costruire.
+	 * Metodo che gestisce un blocco [room]
+	 * utilizzando il builder delle stanze riesce cosi ad aggiungere
+	 * nome, descrizione, oggetti, link e personaggi presenti in quella stanza.
+	 * In una partita creata da un modello la stanza riceve solo gli oggetti che secondo lo stato si trovano ancora li.
 	 * 
-	 * @param	setting	il blocco [objects]
+	 * @param	stanza		un builder della stanza
+	 * @param	definizione	il blocco [room]
+	 * @return				la stanza costruita
 	 */
-	private void creazioneOggetti(String[] settings) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException, ClassNotFoundException
+	private Stanza creazioneStanza(StanzaBuilder stanza, DefinizioneStanza definizione)
 	{
-		for (String oggetto : settings)
+		stanza.descrizione(definizione.getDescrizione());
+		for (String oggetto : definizione.getOggetti()) 
 		{
-			if(oggetto.contains("\t// ")) oggetto = oggetto.split("\\t// ")[0];
-			String[] arrayitems = formatta(oggetto);
-			Class<?> c = Class.forName("it.uniroma1.textadv.Oggetto$"+arrayitems[1]);
-			
-			if(arrayitems.length == 2) items.add((Oggetto) c.getConstructor(String.class).newInstance(arrayitems[0]));
-			else 
-			{
-				items.add((Oggetto) c.getConstructor(String.class, String.class).newInstance(arrayitems[0], arrayitems[2]));
-				try { getLink(arrayitems[2]).setUtil(arrayitems[0]); }
-				catch(NullPointerException e) { }
-			}
+			Oggetto o = getItem(oggetto);
+			if(modello == null || o == null || stato.getLuogo(o.getNumero()) == definizione.getId()) stanza.addItem(o);
 		}
+		for (String personaggio : definizione.getPersonaggi()) stanza.addCharacter(getCharacter(personaggio));
+		for (Map.Entry<Direzione, String> uscita : definizione.getUscite().entrySet()) 
+		{
+			Link tp = getLink(uscita.getValue());
+			if(tp != null) stanza.addLink(uscita.getKey(), tp);
+			else stanza.addLink(uscita.getKey(), new Link(uscita.getValue(), uscita.getValue(), false));
+		}
+		Stanza s = stanza.build();
+		s.setId(definizione.getId());
+		return s;
 	}
 	
 	/*
-	 * Metodo che gestisce la parte di file dell'etichetta [links]
-	 * aggiunge al mondo che stiamo creando tutti i link che contiene la mappa di gioco,
-	 * usando la reflection e chiamando il costruttore segnalato nel blocco in input riesce cosi
-	 * a dare: nome e dove conduce a tutti i link da costruire.
+	 * Metodo che gestisce una riga del blocco [characters]
+	 * costruisce il personaggio descritto,
+	 * usando la fabbrica registrata per il tipo segnalato nella riga in input riesce cosi
+	 * a dare: nome e inventario al personaggio da costruire.
 	 * 
-	 * @param	setting	il blocco [links]
+	 * @param	arraycharacters	una riga del blocco [characters]
+	 * @return					il personaggio costruito
 	 */
-	private void creazioneLinks(String[] settings) throws ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException
+	private static Character creazionePersonaggio(String[] arraycharacters) throws ClassNotFoundException, NoSuchMethodException
 	{
-		for (String link : settings)
+		return RegistroTipi.creaPersonaggio(arraycharacters[1], arraycharacters[0], Arrays.copyOfRange(arraycharacters, 2, arraycharacters.length));
+	}
+	
+	/*
+	 * Metodo che gestisce una riga del blocco [objects]
+	 * costruisce l'oggetto descritto,
+	 * usando la fabbrica registrata per il tipo segnalato nella riga in input riesce cosi
+	 * a dare: nome e, se  un utensile, oggetto su cui va usato all'oggetto da costruire.
+	 * 
+	 * @param	arrayitems	una riga del blocco [objects]
+	 * @return				l'oggetto costruito
+	 */
+	private static Oggetto creazioneOggetto(String[] arrayitems) throws ClassNotFoundException, NoSuchMethodException
+	{
+		if(arrayitems.length == 2) return RegistroTipi.creaOggetto(arrayitems[1], arrayitems[0]);
+		else return RegistroTipi.creaOggetto(arrayitems[1], arrayitems[0], arrayitems[2]);
+	}
+	
+	/*
+	 * Metodo che segna su ogni link l'utensile che serve ad aprirlo, cio l'oggetto la cui riga indica il link:
+	 * va fatto prima di aggiungere i link al mondo, cosi l'utensile fa parte del loro stato iniziale.
+	 * 
+	 * @param	links		i link costruiti, nell'ordine del blocco [links]
+	 * @param	oggetti		le righe del blocco [objects]
+	 */
+	private static void utensili(List<Link> links, List<String[]> oggetti)
+	{
+		Map<String, Link> perNome = new HashMap<>();
+		for(Link l : links) perNome.putIfAbsent(chiave(l.getNome()), l);
+		for(String[] riga : oggetti)
 		{
-			String[] arraylinks = formatta(link);
-			Class<?> c = Class.forName("it.uniroma1.textadv.Link$"+arraylinks[1]);
-			links.add((Link) c.getConstructor(String.class, String.class).newInstance(arraylinks[0], arraylinks[3]));
+			Link l = (riga.length == 2) ? null : perNome.get(chiave(riga[2]));
+			if(l != null) l.setUtil(riga[0]);
 		}
 	}
 	
 	/*
-	 * Metodo che consente di rimuovere commenti dal file in input (es secchio	Secchio	//	inizialmente vuoto)
+	 * Metodo che gestisce una riga del blocco [links]
+	 * costruisce il link descritto,
+	 * usando la fabbrica registrata per il tipo segnalato nella riga in input riesce cosi
+	 * a dare: nome e le due stanze che collega al link da costruire.
+	 * 
+	 * @param	arraylinks	una riga del blocco [links]
+	 * @return				il link costruito
+	 */
+	private static Link creazioneLink(String[] arraylinks) throws ClassNotFoundException, NoSuchMethodException
+	{
+		return RegistroTipi.creaLink(arraylinks[1], arraylinks[0], arraylinks[2], arraylinks[3]);
+	}
+	
+	/*
+	 * Metodo che normalizza un nome per usarlo come chiave negli indici del mondo.
+	 * 
+	 * @param	nome	il nome dell'elemento
+	 * @return			il nome in minuscolo
+	 */
+	private static String chiave(String nome) { return nome.toLowerCase(); }
+	
+	/*
+	 * Metodo che ricostruisce l'indice delle stanze e le posizioni a partire dalla mappa:
+	 * gli oggetti nell'inventario restano dove sono.
+	 */
+	private void indicizzaStanze() 
+	{ 
+		indiceStanze.clear();
+		posizionePersonaggi.clear();
+		for(int o = 0; o < stato.getNumeroOggetti(); o++) if(stato.getLuogo(o) >= 0) stato.setLuogo(o, StatoMondo.NESSUNA);
+		if(modello == null) for(int i = 0; i < map.size(); i++) map.get(i).setId(i);
+		for(Stanza s : map) indicizzaStanza(s);
+	}
+	
+	/*
+	 * Metodo che aggiunge agli indici una stanza con gli oggetti e i personaggi che contiene.
+	 * 
+	 * @param	s	la stanza da indicizzare
+	 */
+	private void indicizzaStanza(Stanza s)
+	{
+		s.setMondo(this);
+		indiceStanze.putIfAbsent(chiave(s.getName()), s);
+		for(Oggetto o : s.getItems()) if(appartiene(o) && stato.getLuogo(o.getNumero()) == StatoMondo.NESSUNA) stato.setLuogo(o.getNumero(), s.getId());
+		for(Character c : s.getCharacters()) if(c != null) posizionePersonaggi.putIfAbsent(c, s);
+		registraLinks(s);
+	}
+	
+	/*
+	 * Metodo che aggiunge al mondo i link che una stanza porta con s e che il mondo non ha ancora,
+	 * cosi la loro apertura viene tenuta nello stato e letta dal grafo.
+	 * Le uscite che portano direttamente a una stanza non sono link del mondo e vengono ignorate.
+	 * 
+	 * @param	s	la stanza
+	 */
+	private void registraLinks(Stanza s)
+	{
+		for(Link l : s.getLinks().values()) if(l.getPartenza() != null && !indiceLinks.containsKey(chiave(l.getNome()))) addLink(l);
+	}
+	
+	/*
+	 * Metodo che dice se un oggetto  stato aggiunto a questo mondo, e ha quindi un posto nel suo stato.
+	 * 
+	 * @param	o	l'oggetto
+	 */
+	private boolean appartiene(Oggetto o) { return o != null && o.getStato() == stato; }
+	
+	/*
+	 * Metodo chiamato dalla stanza quando vi viene aggiunto un oggetto:
+	 * aggiorna il luogo dell'oggetto nello stato e, se l'oggetto si trovava in un'altra stanza gia istanziata, ve lo rimuove.
+	 * Una stanza non ancora istanziata non lo ricevera dal modello, perch lo stato dice che non  piu li.
+	 * 
+	 * @param	o	l'oggetto spostato
+	 * @param	s	la stanza in cui si trova adesso
+	 */
+	void spostaOggetto(Oggetto o, Stanza s)
+	{
+		if(!appartiene(o)) return;
+		int precedente = stato.getLuogo(o.getNumero());
+		stato.setLuogo(o.getNumero(), s.getId());
+		if(precedente < 0 || precedente == s.getId()) return;
+		Stanza p = getStanzaIstanziata(precedente);
+		if(p != null) p.removeItem(o);
+	}
+	
+	/*
+	 * Metodo chiamato dalla stanza quando ne viene rimosso un oggetto.
+	 * 
+	 * @param	o	l'oggetto rimosso
+	 * @param	s	la stanza da cui  stato rimosso
+	 */
+	void rimuoviOggetto(Oggetto o, Stanza s) { if(appartiene(o) && stato.getLuogo(o.getNumero()) == s.getId()) stato.setLuogo(o.getNumero(), StatoMondo.NESSUNA); }
+	
+	/*
+	 * Metodo chiamato dal giocatore quando raccoglie un oggetto.
+	 * 
+	 * @param	o	l'oggetto raccolto
+	 */
+	void raccogliOggetto(Oggetto o) { if(appartiene(o)) stato.setLuogo(o.getNumero(), StatoMondo.INVENTARIO); }
+	
+	/*
+	 * Getter dello stato della partita, quello che gli elementi leggono e scrivono.
+	 */
+	StatoMondo getStatoPartita() { return stato; }
+	
+	/*
+	 * Getter dello stato con cui il mondo  stato caricato, null per un mondo costruito a mano.
 	 */
-	private String[] formatta(String s) { if(s.contains(" // ")) s = s.split(" // ")[0]; return s.split("\t"); }
+	StatoMondo getStatoIniziale() { return iniziale; }
+	
+	/*
+	 * Getter di un oggetto dal suo numero nello stato, istanziato se la partita non l'ha ancora toccato.
+	 * 
+	 * @param	numero	il numero dell'oggetto
+	 */
+	Oggetto getOggetto(int numero) { return (modello == null) ? items.get(numero) : getItem(modello.getNomeOggetto(numero)); }
+	
+	/*
+	 * Getter di un personaggio dal suo numero nello stato, istanziato se la partita non l'ha ancora toccato.
+	 * 
+	 * @param	numero	il numero del personaggio
+	 */
+	Character getPersonaggio(int numero) { return (modello == null) ? characters.get(numero) : getCharacter(modello.getNomePersonaggio(numero)); }
+	
+	/*
+	 * Getter di una stanza dal suo numero, solo se la partita l'ha gia istanziata.
+	 * 
+	 * @param	id	il numero della stanza
+	 * @return		la stanza, null se non  ancora stata istanziata
+	 */
+	Stanza getStanzaIstanziata(int id) { return (modello == null) ? map.get(id) : indiceStanze.get(chiave(grafo.getNome(id))); }
+	
+	/*
+	 * Metodo che scarta il risolutore dei nomi e il grafo quando vengono aggiunti elementi a mano:
+	 * nelle partite create da un modello sono gi tutti nel risolutore e nel grafo del modello.
+	 */
+	private void nuoviNomi() { if(modello == null) { risolutore = null; grafo = null; alberi.clear(); } }
 	
 	//Getter e setter
-	public List<Character> getCharacters() { return characters; }
+	public List<Character> getCharacters() { completa(); return Collections.unmodifiableList(characters); }
 	
-	public List<Oggetto> getItems() { return items; }
+	public List<Oggetto> getItems() { completa(); return Collections.unmodifiableList(items); }
 
-	public List<Link> getLinks() { return links; }
+	public List<Link> getLinks() { completa(); return Collections.unmodifiableList(links); }
 	
 	public String getDescription() { return description; }
 	
-	public List<Stanza> getMap() { return map; }
+	public List<Stanza> getMap() { completa(); return Collections.unmodifiableList(map); }
 	
 	public String getName() { return name; }
 	
@@ -231,27 +476,250 @@ public class Mondo {
 	
 	public Stanza getPosizione() { return posizione; }
 	
-	public Oggetto getItem(String nome) { for(Oggetto o : getItems()) if(o.getNome().equals(nome)) return o; return null; }
+	/*
+	 * Getter del risolutore dei nomi del mondo, creato con i nomi attuali se il mondo non  stato caricato da una definizione.
+	 */
+	Risolutore getRisolutore() 
+	{
+		if(risolutore == null)
+		{
+			List<String> nomi = new ArrayList<>();
+			for(Stanza s : getMap()) nomi.add(s.getName());
+			for(Link l : getLinks()) nomi.add(l.getNome());
+			for(Oggetto o : getItems()) nomi.add(o.getNome());
+			for(Character c : getCharacters()) nomi.add(c.getNome());
+			risolutore = new Risolutore(nomi);
+		}
+		return risolutore;
+	}
 	
-	public Character getCharacter(String nome) { for(Character c : getCharacters()) if(c.getNome().equals(nome)) return c; return null; }
+	/*
+	 * Getter del grafo del mondo, compilato dalla mappa attuale se il mondo non  stato caricato da una definizione.
+	 */
+	Grafo getGrafo()
+	{
+		if(grafo == null)
+		{
+			for(Stanza s : getMap()) registraLinks(s);
+			grafo = Grafo.fromStanze(getMap(), getLinks());
+		}
+		return grafo;
+	}
 	
-	public Link getLink(String nome) { for(Link l : getLinks()) if(l.getNome().equals(nome)) return l; return null; }
+	/*
+	 * Metodo che dice se un link del grafo  chiuso in questo momento della partita.
+	 * 
+	 * @param	link	il numero del link nel grafo
+	 */
+	boolean isChiuso(int link) { return getGrafo().isChiuso(link) ^ stato.getLink(link); }
 	
-	public Stanza getStanza(String nome) { for(Stanza s : getMap()) if(s.getName().equals(nome)) return s; return null; }
+	/*
+	 * Metodo che calcola il percorso piu breve tra due stanze passando solo per link aperti:
+	 * i link chiusi, compresi quelli che si aprono con un utensile, restano un muro finch non vengono aperti.
+	 * La prima richiesta da una stanza visita tutta la mappa, le successive dalla stessa stanza costano quanto il percorso.
+	 * 
+	 * @param	da	la stanza di partenza
+	 * @param	a	la stanza di arrivo
+	 * @return		le direzioni da prendere in ordine, null se la stanza di arrivo non  raggiungibile
+	 */
+	public List<Direzione> getPercorso(Stanza da, Stanza a) { return Grafo.percorso(albero(da), a.getId()); }
 	
-	public Stanza getObjLocation(String obj) { for(Stanza s : getMap()) if(s.getItem(obj) != null) return s; return null; }
+	/*
+	 * Metodo che dice se da una stanza si pu arrivare in un'altra passando solo per link aperti.
+	 * 
+	 * @param	da	la stanza di partenza
+	 * @param	a	la stanza di arrivo
+	 */
+	public boolean isRaggiungibile(Stanza da, Stanza a) { return albero(da)[a.getId()] != Grafo.NESSUNA; }
+	
+	/*
+	 * Metodo che restituisce l'albero dei percorsi da una stanza, calcolandolo se non  tra gli ultimi usati:
+	 * gli alberi in memoria vengono scartati appena un link si apre o si chiude.
+	 * 
+	 * @param	da	la stanza di partenza
+	 * @return		l'albero dei percorsi, vedi {@link Grafo#visita(int, BitSet)}
+	 */
+	private int[] albero(Stanza da)
+	{
+		Grafo g = getGrafo();
+		if(versioneAlberi != stato.getVersioneLinks())
+		{
+			alberi.clear();
+			versioneAlberi = stato.getVersioneLinks();
+		}
+		return alberi.computeIfAbsent(da.getId(), id -> 
+		{
+			BitSet chiusi = g.getChiusi();
+			chiusi.xor(stato.getLinks());
+			return g.visita(id, chiusi);
+		});
+	}
 	
-	public Stanza getCharacterLocation(String character) { for(Stanza s : getMap()) if(s.getCharacter(character) != null) return s; return null; }
+	/*
+	 * Getter di una stanza dal suo numero nel grafo.
+	 * 
+	 * @param	id	il numero della stanza
+	 */
+	Stanza getStanza(int id) { return (modello == null) ? map.get(id) : getStanza(grafo.getNome(id)); }
 	
-	public void addRoom(Stanza s) { map.add(s); }
+	/*
+	 * Metodo che fotografa lo stato mutabile della partita: la copia non cambia piu con la partita.
+	 */
+	public StatoMondo getStato()
+	{
+		stato.condividi();
+		return stato.copia();
+	}
+	
+	public Oggetto getItem(String nome) 
+	{ 
+		Oggetto o = indiceOggetti.get(chiave(nome));
+		if(o != null || completo || (o = modello.creaOggetto(nome)) == null) return o;
+		addItem(o, modello.getNumeroOggetto(nome));
+		return o;
+	}
+	
+	public Character getCharacter(String nome) 
+	{ 
+		Character c = indicePersonaggi.get(chiave(nome));
+		if(c != null || completo || (c = modello.creaPersonaggio(nome)) == null) return c;
+		addCharacter(c, modello.getNumeroPersonaggio(nome));
+		return c;
+	}
+	
+	public Link getLink(String nome) 
+	{ 
+		Link l = indiceLinks.get(chiave(nome));
+		if(l != null || completo || (l = modello.creaLink(nome)) == null) return l;
+		addLink(l, modello.getNumeroLink(nome));
+		return l;
+	}
+	
+	public Stanza getStanza(String nome) 
+	{ 
+		Stanza s = indiceStanze.get(chiave(nome));
+		if(s != null || completo) return s;
+		DefinizioneStanza definizione = modello.getStanza(nome);
+		if(definizione == null) return null;
+		s = creazioneStanza(StanzaBuilder.newBuilder(definizione.getNome()), definizione);
+		addRoom(s, s.getId());
+		return s;
+	}
+	
+	public Stanza getObjLocation(String obj) 
+	{ 
+		Oggetto o = getItem(obj); 
+		if(!appartiene(o)) return null;
+		int luogo = stato.getLuogo(o.getNumero());
+		return (luogo < 0) ? null : getStanza(luogo); 
+	}
+	
+	public Stanza getCharacterLocation(String character) 
+	{ 
+		Character c = getCharacter(character); 
+		if(c == null) return null;
+		if(modello != null && modello.getStanzaPersonaggio(c.getNome()) != null) getStanza(modello.getStanzaPersonaggio(c.getNome()));
+		return posizionePersonaggi.get(c); 
+	}
+	
+	/*
+	 * Metodo che aggiunge una stanza a un mondo costruito a mano o caricato da una definizione.
+	 * Una partita creata da un modello ha solo le stanze del modello, numerate nel suo grafo, e non ne accetta altre.
+	 * 
+	 * @param	s	la stanza da aggiungere
+	 */
+	public void addRoom(Stanza s) 
+	{ 
+		if(modello != null) throw new UnsupportedOperationException("Non si possono aggiungere stanze a una partita creata da un modello");
+		addRoom(s, (s.getId() == Grafo.NESSUNA) ? map.size() : s.getId());
+	}
+	
+	/*
+	 * Metodo che aggiunge al mondo una stanza con il numero che ha nel grafo.
+	 */
+	private void addRoom(Stanza s, int id)
+	{
+		s.setId(id);
+		map.add(s); 
+		indicizzaStanza(s); 
+		nuoviNomi(); 
+	}
+	
+	public void addItem(Oggetto o) { addItem(o, stato.nuovoOggetto()); }
+	
+	public void addCharacter(Character c) { addCharacter(c, stato.nuovoPersonaggio()); }
+	
+	public void addLink(Link l) { addLink(l, stato.nuovoLink()); }
+	
+	/*
+	 * Metodi che aggiungono un elemento al mondo con il numero che ha nello stato.
+	 */
+	private void addItem(Oggetto o, int numero) { items.add(o); indiceOggetti.putIfAbsent(chiave(o.getNome()), o); o.setStato(stato, numero); nuoviNomi(); }
+	
+	private void addCharacter(Character c, int numero) { characters.add(c); indicePersonaggi.putIfAbsent(chiave(c.getNome()), c); c.setStato(stato, numero); nuoviNomi(); }
+	
+	private void addLink(Link l, int numero) { links.add(l); indiceLinks.putIfAbsent(chiave(l.getNome()), l); l.setStato(stato, numero); nuoviNomi(); }
 	
 	public void setPosizione(Stanza posizione) { this.posizione = posizione; }
 	
 	public void setDescription(String description) { this.description = description; }
 	
-	public void setMap(ArrayList<Stanza> map) { this.map = map; }
+	public void setMap(ArrayList<Stanza> map) 
+	{ 
+		if(modello != null) throw new UnsupportedOperationException("Non si puo sostituire la mappa di una partita creata da un modello");
+		this.map = map; 
+		indicizzaStanze(); 
+		nuoviNomi(); 
+	}
 	
 	public void setName(String name) { this.name = name; }
 	
-	public void setPlayer(Giocatore player) { this.player = player; }
+	public void setPlayer(Giocatore player) { this.player = player; player.setMondo(this); }
+	
+	public Uscita getOutput() { return output; }
+	
+	public void setOutput(Uscita output) { this.output = output; }
+	
+	public void setOutput(PrintStream output) { this.output = new Uscita.Flusso(output); }
+	
+	/*
+	 * Metodo che estrae il prossimo numero casuale della partita, con il generatore SplitMix64:
+	 * lo stato del generatore  un solo long, cosi si salva e si ripristina insieme alla partita.
+	 * 
+	 * @param	limite	il limite (escluso) del numero da estrarre
+	 * @return			un numero tra 0 e limite - 1
+	 */
+	int casuale(int limite)
+	{
+		long z = (casuale += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return (int) Math.floorMod(z ^ (z >>> 31), (long) limite);
+	}
+	
+	/*
+	 * Getter dello stato del generatore di numeri casuali.
+	 */
+	long getSeme() { return casuale; }
+	
+	/*
+	 * Setter del seme del generatore di numeri casuali della partita.
+	 * 
+	 * @param	seme	il seme, da cui dipendono le risposte casuali dei personaggi
+	 */
+	public void setSeme(long seme) { casuale = seme; }
+	
+	public Diario getDiario() { return diario; }
+	
+	/*
+	 * Setter del diario su cui registrare i comandi della partita: il diario fotografa subito la partita,
+	 * da cui ripartir per ricostruirla.
+	 * 
+	 * @param	diario	il diario, o null per non registrare piu i comandi
+	 */
+	public void setDiario(Diario diario) 
+	{ 
+		this.diario = diario; 
+		if(diario != null) diario.inizia(this);
+	}
 }
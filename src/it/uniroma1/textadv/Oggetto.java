@@ -10,19 +10,36 @@ public abstract class Oggetto {
 
 	private String nome;
 	private boolean visibile = true;
+	private boolean attivo;
+	private StatoMondo stato;
+	private int numero = StatoMondo.NESSUNA;
+	private final int capacita = Capacita.di(getClass());
 	
 	/*
 	 * Costruttore
 	 * 
 	 * @param	nome	nome dell'oggetto
 	 */
-	public Oggetto(String nome) { this.nome = nome; }
+	public Oggetto(String nome) { this(nome, false); }
+	
+	/*
+	 * Costruttore per i tipi con uno stato proprio.
+	 * 
+	 * @param	nome	nome dell'oggetto
+	 * @param	attivo	lo stato proprio iniziale, vedi {@link #isAttivo()}
+	 */
+	protected Oggetto(String nome, boolean attivo) { this.nome = nome; this.attivo = attivo; }
 	
 	/*
 	 * Getter del nome
 	 */
 	public String getNome() { return nome; }
 	
+	/*
+	 * Getter delle capacit dell'oggetto, vedi {@link Capacita}
+	 */
+	public int getCapacita() { return capacita; }
+	
 	/*
 	 * metodo che permette di avere una descrizione di un oggetto guardandolo
 	 */
@@ -31,12 +48,56 @@ public abstract class Oggetto {
 	/*
 	 * Getter dello stato dell'oggetto
 	 */
-	public boolean isVisibile() { return visibile; }
+	public boolean isVisibile() { return (stato == null) ? visibile : visibile ^ stato.getOggetto(numero, StatoMondo.VISIBILE); }
 	
 	/*
 	 * Setter dello stato dell'oggetto
 	 */
-	public void setVisibile(boolean visibile) { this.visibile = visibile; }
+	public void setVisibile(boolean visibile) 
+	{ 
+		if(stato == null) this.visibile = visibile;
+		else stato.setOggetto(numero, StatoMondo.VISIBILE, visibile != this.visibile); 
+	}
+	
+	/*
+	 * Getter dello stato proprio del tipo di oggetto: chiuso per i contenitori, acceso per il camino,
+	 * rotto per il salvadanaio, pieno per il secchio.
+	 */
+	protected boolean isAttivo() { return (stato == null) ? attivo : attivo ^ stato.getOggetto(numero, StatoMondo.ATTIVO); }
+	
+	/*
+	 * Setter dello stato proprio del tipo di oggetto.
+	 */
+	protected void setAttivo(boolean attivo) 
+	{ 
+		if(stato == null) this.attivo = attivo;
+		else stato.setOggetto(numero, StatoMondo.ATTIVO, attivo != this.attivo); 
+	}
+	
+	/*
+	 * Setter dello stato del mondo in cui l'oggetto entra: da qui in poi i suoi valori sono tenuti nello stato,
+	 * come differenza da quelli che ha in questo momento.
+	 * 
+	 * @param	stato	lo stato della partita
+	 * @param	numero	il numero dell'oggetto nello stato
+	 */
+	void setStato(StatoMondo stato, int numero) 
+	{ 
+		visibile = isVisibile();
+		attivo = isAttivo();
+		this.stato = stato; 
+		this.numero = numero; 
+	}
+	
+	/*
+	 * Getter dello stato del mondo di cui fa parte l'oggetto, null se non  in nessun mondo.
+	 */
+	StatoMondo getStato() { return stato; }
+	
+	/*
+	 * Getter del numero dell'oggetto nello stato del mondo.
+	 */
+	int getNumero() { return numero; }
 	
 	/*
 	 * Classe annidata che identifica il tipo di oggetto "Martello".
@@ -133,8 +194,6 @@ public abstract class Oggetto {
 	 */
 	public static class Secchio extends Oggetto implements Inventario, Utensile
 	{
-		private boolean pieno = false;
-		
 		/*
 		 * Guarda {@link Oggetto(String)}
 		 */
@@ -143,23 +202,23 @@ public abstract class Oggetto {
 		/*
 		 * Metodo che riempie il secchio
 		 */
-		public String riempi() { pieno = true; return "riempito"; }
+		public String riempi() { setAttivo(true); return "riempito"; }
 		
 		/*
 		 * Metodo che svuota il secchio
 		 */
-		public void svuota() { pieno = false; }
+		public void svuota() { setAttivo(false); }
 
 		/*
 		 * Getter dello stato del secchio
 		 */
-		public boolean isPieno() { return pieno; }
+		public boolean isPieno() { return isAttivo(); }
 		
 		/*
 		 * Guarda {@link #Oggetto.guarda()}
 		 */
 		@Override
-		public String guarda() { return pieno ? "Un secchio pieno d'acqua" : "Un secchio vuoto"; }
+		public String guarda() { return isPieno() ? "Un secchio pieno d'acqua" : "Un secchio vuoto"; }
 
 		/*
 		 * Guarda {@link #it.uniroma1.textadv.Utensile}
@@ -220,7 +279,6 @@ public abstract class Oggetto {
 	public static class Scrivania extends Oggetto implements Container
 	{
 		private String contiene;
-		private boolean chiusa = true;
 		
 		/*
 		 * Costruttore
@@ -228,13 +286,18 @@ public abstract class Oggetto {
 		 * @param	nome	nome dell'oggetto
 		 * @param	contiene	nome dell'oggetto che contiene
 		 */
-		public Scrivania(String nome, String contiene) { super(nome); this.contiene = contiene; }
+		public Scrivania(String nome, String contiene) { super(nome, true); this.contiene = contiene; }
+		
+		/*
+		 * Getter dello stato della scrivania
+		 */
+		public boolean isChiusa() { return isAttivo(); }
 		
 		/*
 		 * Guarda {@link #Oggetto.guarda()}
 		 */
 		@Override
-		public String guarda() { return chiusa ? " una scrivania chiusa" : "nel cassetto c' un oggetto "+contiene; }
+		public String guarda() { return isChiusa() ? " una scrivania chiusa" : "nel cassetto c' un oggetto "+contiene; }
 		
 		/*
 		 * Guarda {@link #it.uniroma1.textadv.Container}
@@ -242,7 +305,7 @@ public abstract class Oggetto {
 		@Override
 		public String apri(Mondo m) 
 		{ 
-			chiusa = false;
+			setAttivo(false);
 			m.getPosizione().addItem(m.getItem(contiene)); 
 			return "Aperta!";
 		}
@@ -257,7 +320,6 @@ public abstract class Oggetto {
 	public static class Armadio extends Oggetto implements Container
 	{
 		private String contiene;
-		private boolean chiuso = true;
 		
 		/*
 		 * Costruttore
@@ -265,13 +327,18 @@ public abstract class Oggetto {
 		 * @param	nome	nome dell'oggetto
 		 * @param	contiene	nome dell'oggetto che contiene
 		 */
-		public Armadio(String nome, String contiene) { super(nome); this.contiene = contiene; }
+		public Armadio(String nome, String contiene) { super(nome, true); this.contiene = contiene; }
+		
+		/*
+		 * Getter dello stato dell'armadio
+		 */
+		public boolean isChiuso() { return isAttivo(); }
 		
 		/*
 		 * Guarda {@link #Oggetto.guarda()}
 		 */
 		@Override
-		public String guarda() { return chiuso ? " un armadio chiuso con un lucchetto!" : "Nell'armadio c' un oggetto "+contiene; }
+		public String guarda() { return isChiuso() ? " un armadio chiuso con un lucchetto!" : "Nell'armadio c' un oggetto "+contiene; }
 		
 		/*
 		 * Guarda {@link #it.uniroma1.textadv.Container}
@@ -279,7 +346,7 @@ public abstract class Oggetto {
 		@Override
 		public String apri(Mondo m) 
 		{
-			chiuso = false; 
+			setAttivo(false); 
 			m.getPosizione().addItem(m.getItem(contiene));
 			return "Aperto!";
 		}
@@ -294,7 +361,6 @@ public abstract class Oggetto {
 	public static class Cassetto extends Oggetto implements Container
 	{
 		private String contiene;
-		private boolean chiuso = true;
 		
 		/*
 		 * Costruttore
@@ -302,13 +368,18 @@ public abstract class Oggetto {
 		 * @param	nome	nome dell'oggetto
 		 * @param	contiene	nome dell'oggetto che contiene
 		 */
-		public Cassetto(String nome, String contiene) { super(nome); this.contiene = contiene; }
+		public Cassetto(String nome, String contiene) { super(nome, true); this.contiene = contiene; }
+		
+		/*
+		 * Getter dello stato del cassetto
+		 */
+		public boolean isChiuso() { return isAttivo(); }
 		
 		/*
 		 * Guarda {@link #Oggetto.guarda()}
 		 */
 		@Override
-		public String guarda() { return chiuso ? "Un cassetto chiuso" : "Nel cassetto c' un oggetto: "+contiene; }
+		public String guarda() { return isChiuso() ? "Un cassetto chiuso" : "Nel cassetto c' un oggetto: "+contiene; }
 		
 		/*
 		 * Guarda {@link #it.uniroma1.textadv.Container}
@@ -316,7 +387,7 @@ public abstract class Oggetto {
 		@Override
 		public String apri(Mondo m) 
 		{ 
-			chiuso = false; 
+			setAttivo(false); 
 			m.getPosizione().addItem(m.getItem(contiene)); 
 			return "Aperto!";
 		}
@@ -331,7 +402,6 @@ public abstract class Oggetto {
 	public static class Salvadanaio extends Oggetto implements Container
 	{
 		private String contiene;
-		private boolean rotto = false;
 		
 		/*
 		 * Costruttore
@@ -339,13 +409,18 @@ public abstract class Oggetto {
 		 * @param	nome	nome dell'oggetto
 		 * @param	contiene	nome dell'oggetto che contiene
 		 */
-		public Salvadanaio(String nome, String contiene) { super(nome); this.contiene = contiene; }
+		public Salvadanaio(String nome, String contiene) { super(nome, false); this.contiene = contiene; }
+		
+		/*
+		 * Getter dello stato del salvadanaio
+		 */
+		public boolean isRotto() { return isAttivo(); }
 
 		/*
 		 * Guarda {@link #Oggetto.guarda()}
 		 */
 		@Override
-		public String guarda() { return rotto ? "Un salvadanaio rotto con "+contiene+" dentro" : "Un salvadanaio"; }
+		public String guarda() { return isRotto() ? "Un salvadanaio rotto con "+contiene+" dentro" : "Un salvadanaio"; }
 
 		/*
 		 * Guarda {@link #it.uniroma1.textadv.Container}
@@ -353,7 +428,7 @@ public abstract class Oggetto {
 		@Override
 		public String apri(Mondo m) 
 		{
-			rotto = true; 
+			setAttivo(true); 
 			m.getPosizione().addItem(m.getItem(contiene));
 			return "Rotto!";
 		}
@@ -368,7 +443,6 @@ public abstract class Oggetto {
 	public static class Camino extends Oggetto implements Container
 	{
 		private String contiene;
-		private boolean acceso = true;
 		
 		/*
 		 * Costruttore
@@ -376,13 +450,18 @@ public abstract class Oggetto {
 		 * @param	nome	nome dell'oggetto
 		 * @param	contiene	nome dell'oggetto che contiene
 		 */
-		public Camino(String nome, String contiene) { super(nome); this.contiene = contiene; }
+		public Camino(String nome, String contiene) { super(nome, true); this.contiene = contiene; }
+		
+		/*
+		 * Getter dello stato del camino
+		 */
+		public boolean isAcceso() { return isAttivo(); }
 
 		/*
 		 * Guarda {@link #Oggetto.guarda()}
 		 */
 		@Override
-		public String guarda() { return acceso ? " un camino acceso" : "Dentro il camino spento c' un oggetto: "+contiene; }
+		public String guarda() { return isAcceso() ? " un camino acceso" : "Dentro il camino spento c' un oggetto: "+contiene; }
 
 		/*
 		 * Guarda {@link #it.uniroma1.textadv.Container}
@@ -390,7 +469,7 @@ public abstract class Oggetto {
 		@Override
 		public String apri(Mondo m) 
 		{
-			acceso = false;
+			setAttivo(false);
 			m.getPosizione().addItem(m.getItem(contiene));
 			return "Spento!";
 		}
@@ -500,6 +579,12 @@ public abstract class Oggetto {
 		 */
 		@Override
 		public String guarda() { return "aaaaaaaa coppa daaa maggica"; }
+		
+		/*
+		 * Guarda {@link #Oggetto.getCapacita()}, il tesoro fa vincere la partita.
+		 */
+		@Override
+		public int getCapacita() { return super.getCapacita() | Capacita.VITTORIA; }
 	}
 	
 	/*
@@ -0,0 +1,212 @@
+package it.uniroma1.textadv;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Classe che associa ad ogni tipo nominato nel file del mondo (es Martello, Venditore, Porta) la fabbrica che lo costruisce.
+ * I tipi del gioco sono registrati all'avvio, cosi il caricamento non passa dalla reflection per ogni riga del file;
+ * eventuali estensioni possono registrare i propri tipi con i metodi registra*.
+ * Un tipo non registrato viene cercato una sola volta tra le classi annidate tramite reflection
+ * e il costruttore trovato viene memorizzato per le righe successive. Il costruttore dipende dai parametri della riga
+ * (es con o senza l'oggetto contenuto), quindi viene memorizzato con il tipo seguito dal numero di parametri che accetta (es Chiave/1),
+ * cosi una riga dello stesso tipo con parametri diversi non usa il costruttore sbagliato.
+ * 
+ * @author Valerio Mesiti
+ */
+public class RegistroTipi {
+
+	private static final Map<String, Fabbrica<? extends Oggetto>> OGGETTI = new ConcurrentHashMap<>();
+	private static final Map<String, Fabbrica<? extends Character>> PERSONAGGI = new ConcurrentHashMap<>();
+	private static final Map<String, Fabbrica<? extends Link>> LINKS = new ConcurrentHashMap<>();
+	
+	static
+	{
+		registraOggetto("Martello", (nome, p) -> new Oggetto.Martello(nome));
+		registraOggetto("Cacciavite", (nome, p) -> new Oggetto.Cacciavite(nome));
+		registraOggetto("Tronchesi", (nome, p) -> new Oggetto.Tronchesi(nome, p[0]));
+		registraOggetto("Secchio", (nome, p) -> new Oggetto.Secchio(nome));
+		registraOggetto("Chiave", (nome, p) -> new Oggetto.Chiave(nome, p[0]));
+		registraOggetto("Scrivania", (nome, p) -> new Oggetto.Scrivania(nome, p[0]));
+		registraOggetto("Armadio", (nome, p) -> new Oggetto.Armadio(nome, p[0]));
+		registraOggetto("Cassetto", (nome, p) -> new Oggetto.Cassetto(nome, p[0]));
+		registraOggetto("Salvadanaio", (nome, p) -> new Oggetto.Salvadanaio(nome, p[0]));
+		registraOggetto("Camino", (nome, p) -> new Oggetto.Camino(nome, p[0]));
+		registraOggetto("Vite", (nome, p) -> new Oggetto.Vite(nome, p[0]));
+		registraOggetto("Soldi", (nome, p) -> new Oggetto.Soldi(nome));
+		registraOggetto("Spada", (nome, p) -> new Oggetto.Spada(nome));
+		registraOggetto("Tesoro", (nome, p) -> new Oggetto.Tesoro(nome));
+		registraOggetto("Pozzo", (nome, p) -> new Oggetto.Pozzo(nome));
+		
+		registraPersonaggio("Amico", Character.Amico::new);
+		registraPersonaggio("Nemico", Character.Nemico::new);
+		registraPersonaggio("Personaggio", (nome, p) -> new Character.Personaggio(nome));
+		registraPersonaggio("Venditore", Character.Venditore::new);
+		registraPersonaggio("Guardiano", Character.Guardiano::new);
+		registraPersonaggio("Cane", (nome, p) -> new Character.Cane(nome));
+		registraPersonaggio("Gatto", (nome, p) -> new Character.Gatto(nome));
+		
+		registraLink("Botola", (nome, p) -> new Link.Botola(nome, p[0], p[1]));
+		registraLink("Porta", (nome, p) -> new Link.Porta(nome, p[0], p[1]));
+		registraLink("Bus", (nome, p) -> new Link.Bus(nome, p[0], p[1]));
+		registraLink("Treno", (nome, p) -> new Link.Treno(nome, p[0], p[1]));
+		registraLink("Teletrasporto", (nome, p) -> new Link.Teletrasporto(nome, p[0], p[1]));
+	}
+	
+	/*
+	 * Costruttore privato, la classe offre solo metodi statici.
+	 */
+	private RegistroTipi() {}
+	
+	/*
+	 * Metodo che registra un tipo di oggetto.
+	 * 
+	 * @param	tipo		il nome del tipo come compare nel file del mondo
+	 * @param	fabbrica	la fabbrica che costruisce l'oggetto
+	 */
+	public static void registraOggetto(String tipo, Fabbrica<? extends Oggetto> fabbrica) { OGGETTI.put(tipo, fabbrica); }
+	
+	/*
+	 * Metodo che registra un tipo di personaggio.
+	 * 
+	 * @param	tipo		il nome del tipo come compare nel file del mondo
+	 * @param	fabbrica	la fabbrica che costruisce il personaggio
+	 */
+	public static void registraPersonaggio(String tipo, Fabbrica<? extends Character> fabbrica) { PERSONAGGI.put(tipo, fabbrica); }
+	
+	/*
+	 * Metodo che registra un tipo di link.
+	 * 
+	 * @param	tipo		il nome del tipo come compare nel file del mondo
+	 * @param	fabbrica	la fabbrica che costruisce il link
+	 */
+	public static void registraLink(String tipo, Fabbrica<? extends Link> fabbrica) { LINKS.put(tipo, fabbrica); }
+	
+	/*
+	 * Metodo che costruisce un oggetto del tipo indicato.
+	 * 
+	 * @param	tipo		il nome del tipo
+	 * @param	nome		il nome dell'oggetto
+	 * @param	parametri	gli eventuali parametri (es l'oggetto contenuto)
+	 * @return				l'oggetto costruito
+	 */
+	public static Oggetto creaOggetto(String tipo, String nome, String... parametri) throws ClassNotFoundException, NoSuchMethodException
+	{
+		return fabbricaOggetto(tipo, parametri.length).crea(nome, parametri);
+	}
+	
+	/*
+	 * Metodo che costruisce un personaggio del tipo indicato.
+	 * 
+	 * @param	tipo		il nome del tipo
+	 * @param	nome		il nome del personaggio
+	 * @param	parametri	l'inventario del personaggio
+	 * @return				il personaggio costruito
+	 */
+	public static Character creaPersonaggio(String tipo, String nome, String... parametri) throws ClassNotFoundException, NoSuchMethodException
+	{
+		return fabbricaPersonaggio(tipo, parametri.length).crea(nome, parametri);
+	}
+	
+	/*
+	 * Metodo che costruisce un link del tipo indicato.
+	 * 
+	 * @param	tipo		il nome del tipo
+	 * @param	nome		il nome del link
+	 * @param	partenza	la stanza da cui parte il link
+	 * @param	arrivo		la stanza in cui porta il link
+	 * @return				il link costruito
+	 */
+	public static Link creaLink(String tipo, String nome, String partenza, String arrivo) throws ClassNotFoundException, NoSuchMethodException
+	{
+		return fabbricaLink(tipo).crea(nome, partenza, arrivo);
+	}
+	
+	/*
+	 * Metodo che restituisce la fabbrica di un tipo di oggetto, risolvendola la prima volta se il tipo non  registrato.
+	 * 
+	 * @param	tipo		il nome del tipo
+	 * @param	parametri	il numero di parametri della riga, usato per scegliere il costruttore di un tipo non registrato
+	 * @return				la fabbrica del tipo
+	 */
+	public static Fabbrica<? extends Oggetto> fabbricaOggetto(String tipo, int parametri) throws ClassNotFoundException, NoSuchMethodException
+	{
+		Fabbrica<? extends Oggetto> f = OGGETTI.get(tipo);
+		if(f == null && (f = OGGETTI.get(riflesso(tipo, parametri))) == null)
+		{
+			Class<?> c = Class.forName("it.uniroma1.textadv.Oggetto$"+tipo);
+			f = (parametri == 0) ? riflessione(c.asSubclass(Oggetto.class), String.class) : riflessione(c.asSubclass(Oggetto.class), String.class, String.class);
+			OGGETTI.put(riflesso(tipo, parametri), f);
+		}
+		return f;
+	}
+	
+	/*
+	 * Metodo che restituisce la fabbrica di un tipo di personaggio, risolvendola la prima volta se il tipo non  registrato.
+	 * 
+	 * @param	tipo		il nome del tipo
+	 * @param	parametri	il numero di parametri della riga, usato per scegliere il costruttore di un tipo non registrato
+	 * @return				la fabbrica del tipo
+	 */
+	public static Fabbrica<? extends Character> fabbricaPersonaggio(String tipo, int parametri) throws ClassNotFoundException, NoSuchMethodException
+	{
+		Fabbrica<? extends Character> f = PERSONAGGI.get(tipo);
+		if(f == null && (f = PERSONAGGI.get(riflesso(tipo, parametri))) == null)
+		{
+			Class<?> c = Class.forName("it.uniroma1.textadv.Character$"+tipo);
+			f = (parametri == 0) ? riflessione(c.asSubclass(Character.class), String.class) : riflessione(c.asSubclass(Character.class), String.class, String[].class);
+			PERSONAGGI.put(riflesso(tipo, parametri), f);
+		}
+		return f;
+	}
+	
+	/*
+	 * Metodo che restituisce la fabbrica di un tipo di link, risolvendola la prima volta se il tipo non  registrato.
+	 * 
+	 * @param	tipo	il nome del tipo
+	 * @return			la fabbrica del tipo
+	 */
+	public static Fabbrica<? extends Link> fabbricaLink(String tipo) throws ClassNotFoundException, NoSuchMethodException
+	{
+		Fabbrica<? extends Link> f = LINKS.get(tipo);
+		if(f == null)
+		{
+			f = riflessione(Class.forName("it.uniroma1.textadv.Link$"+tipo).asSubclass(Link.class), String.class, String.class, String.class);
+			LINKS.put(tipo, f);
+		}
+		return f;
+	}
+	
+	/*
+	 * Metodo che restituisce la chiave con cui  memorizzata la fabbrica trovata tramite reflection per un tipo:
+	 * il tipo seguito da 0 per il costruttore con il solo nome, da 1 per quello che riceve anche i parametri.
+	 * 
+	 * @param	tipo		il nome del tipo
+	 * @param	parametri	il numero di parametri della riga
+	 * @return				la chiave della fabbrica
+	 */
+	private static String riflesso(String tipo, int parametri) { return tipo + ((parametri == 0) ? "/0" : "/1"); }
+	
+	/*
+	 * Metodo che risolve tramite reflection il costruttore di un tipo non registrato
+	 * e lo trasforma in una fabbrica, cosi che la ricerca venga fatta una sola volta.
+	 * 
+	 * @param	classe	la classe da costruire
+	 * @param	firma	i tipi dei parametri del costruttore (il primo  sempre il nome)
+	 * @return			la fabbrica che chiama il costruttore trovato
+	 */
+	private static <T> Fabbrica<T> riflessione(Class<T> classe, Class<?>... firma) throws NoSuchMethodException
+	{
+		Constructor<T> costruttore = classe.getConstructor(firma);
+		return (nome, parametri) -> 
+		{
+			Object[] argomenti = new Object[firma.length];
+			argomenti[0] = nome;
+			for(int i = 1; i < firma.length; i++) argomenti[i] = (firma[i] == String[].class) ? parametri : parametri[i-1];
+			try { return costruttore.newInstance(argomenti); }
+			catch (InstantiationException | IllegalAccessException | InvocationTargetException e) { throw new IllegalArgumentException("Impossibile creare "+nome+" di tipo "+classe.getSimpleName(), e); }
+		};
+	}
+}
@@ -0,0 +1,248 @@
+package it.uniroma1.textadv;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/*
+ * Classe che riproduce senza interfaccia i file .ff (fast forward) sui rispettivi mondi, per i test di regressione.
+ * Ogni copione viene giocato su una propria partita, creata dal modello del mondo letto una sola volta;
+ * l'output della partita resta in memoria, o viene scartato se non serve. I copioni vengono eseguiti in parallelo su un pool di thread.
+ * Al termine viene stampato, per ogni copione, l'esito (superato se il giocatore ha vinto), i comandi eseguiti
+ * e l'impronta dello stato finale del mondo, seguiti dal numero di comandi al secondo.
+ * I comandi al secondo sono calcolati sul tempo passato a giocare i copioni, senza il caricamento dei mondi,
+ * la creazione delle partite e il calcolo delle impronte, che su un mondo grande istanzia tutte le stanze.
+ * 
+ * @author Valerio Mesiti
+ */
+public class Replica {
+
+	private final Map<Path, ModelloMondo> modelli = new HashMap<>();
+	private final int thread;
+	private final boolean conservaOutput;
+	
+	/*
+	 * Costruttore
+	 * 
+	 * @param	thread			il numero di copioni da eseguire in parallelo
+	 * @param	conservaOutput	true per tenere in memoria l'output delle partite, false per scartarlo
+	 */
+	public Replica(int thread, boolean conservaOutput) { this.thread = thread; this.conservaOutput = conservaOutput; }
+	
+	/*
+	 * Punto d'ingresso della riproduzione.
+	 * 
+	 * @param	args	i file .ff (o le cartelle che li contengono) da riprodurre, ognuno accanto al .game con lo stesso nome;
+	 * 					-r N ripete ogni copione N volte, -t N usa N thread, -v stampa l'output dei copioni falliti,
+	 * 					-m *file* attiva le {@link Metriche} e al termine ne scrive il rapporto nel file
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException, NoSuchMethodException, InterruptedException, ExecutionException
+	{
+		int ripetizioni = 1, thread = Runtime.getRuntime().availableProcessors();
+		boolean verboso = false;
+		Path metriche = null;
+		List<Path> copioni = new ArrayList<>();
+		for(int i = 0; i < args.length; i++)
+			switch(args[i])
+			{
+				case "-r": ripetizioni = Integer.parseInt(args[++i]); break;
+				case "-t": thread = Integer.parseInt(args[++i]); break;
+				case "-v": verboso = true; break;
+				case "-m": metriche = Path.of(args[++i]); Metriche.attiva(); break;
+				default: copioni.addAll(copioni(Path.of(args[i])));
+			}
+		
+		Replica replica = new Replica(thread, verboso);
+		long inizio = System.nanoTime();
+		replica.carica(copioni);
+		System.out.printf("%d mondi caricati in %.3f s%n", replica.modelli.size(), (System.nanoTime() - inizio) / 1e9);
+		inizio = System.nanoTime();
+		List<Esito> esiti = replica.esegui(copioni, ripetizioni);
+		double secondi = (System.nanoTime() - inizio) / 1e9;
+		
+		long comandi = 0, durata = 0;
+		int superati = 0;
+		for(Esito e : esiti)
+		{
+			comandi += e.getComandi();
+			durata += e.getDurata();
+			if(e.isSuperato()) superati++;
+			System.out.println(e);
+			if(verboso && !e.isSuperato()) System.out.println(e.getOutput());
+		}
+		System.out.printf("%d copioni, %d superati, %d falliti in %.3f s, %d comandi in %.3f ms di gioco (%.0f comandi/s)%n", 
+						  esiti.size(), superati, esiti.size() - superati, secondi, comandi, durata / 1e6, comandi / (durata / 1e9));
+		if(metriche != null) Metriche.attiva().scrivi(metriche);
+		if(superati < esiti.size()) System.exit(1);
+	}
+	
+	/*
+	 * Metodo che raccoglie i copioni da un file o, se  una cartella, da tutti i file .ff che contiene.
+	 */
+	private static List<Path> copioni(Path p) throws IOException
+	{
+		if(!Files.isDirectory(p)) return List.of(p);
+		try(Stream<Path> s = Files.walk(p)) { return s.filter(f -> f.toString().endsWith(".ff")).sorted().toList(); }
+	}
+	
+	/*
+	 * Metodo che restituisce il file del mondo di un copione: il file .game con lo stesso nome nella stessa cartella.
+	 */
+	private static Path mondo(Path copione)
+	{
+		String nome = copione.getFileName().toString();
+		return copione.resolveSibling(nome.substring(0, nome.lastIndexOf('.')) + ".game");
+	}
+	
+	/*
+	 * Metodo che legge il modello del mondo di ogni copione, se non  gia stato letto.
+	 * Chiamato prima di {@link #esegui(List, int)}, permette di misurare i comandi al secondo senza il caricamento dei mondi.
+	 * 
+	 * @param	copioni		i file .ff da riprodurre
+	 */
+	public void carica(List<Path> copioni) throws IOException, ClassNotFoundException, NoSuchMethodException
+	{
+		for(Path copione : copioni) if(!modelli.containsKey(mondo(copione))) modelli.put(mondo(copione), ModelloMondo.fromFile(mondo(copione)));
+	}
+	
+	/*
+	 * Metodo che esegue i copioni in parallelo, dopo aver letto una sola volta il modello di ogni mondo.
+	 * 
+	 * @param	copioni		i file .ff da riprodurre
+	 * @param	ripetizioni	quante volte riprodurre ogni copione
+	 * @return				gli esiti, nello stesso ordine dei copioni
+	 */
+	public List<Esito> esegui(List<Path> copioni, int ripetizioni) throws IOException, ClassNotFoundException, NoSuchMethodException, InterruptedException, ExecutionException
+	{
+		carica(copioni);
+		
+		ExecutorService esecutore = Executors.newFixedThreadPool(thread);
+		try
+		{
+			List<Future<Esito>> futuri = new ArrayList<>();
+			for(Path copione : copioni) for(int i = 0; i < ripetizioni; i++) futuri.add(esecutore.submit(() -> esegui(copione)));
+			List<Esito> esiti = new ArrayList<>(futuri.size());
+			for(Future<Esito> f : futuri) esiti.add(f.get());
+			return esiti;
+		}
+		finally { esecutore.shutdown(); }
+	}
+	
+	/*
+	 * Metodo che riproduce un copione su una nuova partita, con l'output in memoria o scartato.
+	 * Un'eccezione durante la partita rende il copione fallito.
+	 * 
+	 * @param	copione	il file .ff da riprodurre
+	 * @return			l'esito della riproduzione
+	 */
+	public Esito esegui(Path copione)
+	{
+		Uscita output = conservaOutput ? new Uscita.Memoria() : Uscita.NULLA;
+		Mondo m = modelli.get(mondo(copione)).nuovaPartita();
+		m.setOutput(output);
+		long inizio = System.nanoTime();
+		int comandi = 0;
+		Exception errore = null;
+		try { comandi = new Gioco().play(m, copione); }
+		catch(Exception e) { errore = e; }
+		long durata = System.nanoTime() - inizio;
+		return new Esito(copione, comandi, durata, errore == null && m.getPlayer().haVinto(), errore, impronta(m), conservaOutput ? output.toString() : "");
+	}
+	
+	/*
+	 * Metodo che calcola l'impronta (SHA-256, primi 16 caratteri esadecimali) dello stato di un mondo:
+	 * la posizione e l'inventario del giocatore, gli oggetti di ogni stanza con la loro visibilit,
+	 * lo stato di ogni link e di ogni personaggio. Stanze e link sono ordinati per nome,
+	 * cosi l'impronta non dipende dall'ordine in cui la partita li ha istanziati.
+	 * 
+	 * @param	m	il mondo di gioco
+	 * @return		l'impronta dello stato del mondo
+	 */
+	public static String impronta(Mondo m)
+	{
+		StringBuilder stato = new StringBuilder();
+		stato.append(m.getPosizione()).append('|').append(m.getPlayer().haVinto()).append('|');
+		for(Inventario o : m.getPlayer().getInventory()) stato.append(o.getNome()).append(',');
+		
+		List<Stanza> stanze = new ArrayList<>(m.getMap());
+		stanze.sort(Comparator.comparing(Stanza::getName));
+		for(Stanza s : stanze)
+		{
+			stato.append('\n').append(s.getName()).append(':');
+			for(Oggetto o : s.getItems()) stato.append(o.getNome()).append(o.isVisibile() ? "" : "*").append(',');
+			for(Character c : s.getCharacters()) if(c != null) stato.append(c.getNome()).append(c.isTranquillo() ? "" : "!").append(',');
+		}
+		
+		List<Link> links = new ArrayList<>(m.getLinks());
+		links.sort(Comparator.comparing(Link::getNome));
+		for(Link l : links) stato.append('\n').append(l.getNome()).append(':').append(l.getChiusa()).append(',').append(l.getUtil());
+		
+		try
+		{
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(stato.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for(int i = 0; i < 8; i++) hex.append(String.format("%02x", hash[i]));
+			return hex.toString();
+		}
+		catch(NoSuchAlgorithmException e) { throw new IllegalStateException(e); }
+	}
+	
+	/*
+	 * Classe che rappresenta l'esito della riproduzione di un copione.
+	 */
+	public static class Esito
+	{
+		private final Path copione;
+		private final int comandi;
+		private final long durata;
+		private final boolean superato;
+		private final Exception errore;
+		private final String impronta;
+		private final String output;
+		
+		private Esito(Path copione, int comandi, long durata, boolean superato, Exception errore, String impronta, String output)
+		{
+			this.copione = copione;
+			this.comandi = comandi;
+			this.durata = durata;
+			this.superato = superato;
+			this.errore = errore;
+			this.impronta = impronta;
+			this.output = output;
+		}
+		
+		public Path getCopione() { return copione; }
+		
+		public int getComandi() { return comandi; }
+		
+		public long getDurata() { return durata; }
+		
+		public boolean isSuperato() { return superato; }
+		
+		public Exception getErrore() { return errore; }
+		
+		public String getImpronta() { return impronta; }
+		
+		public String getOutput() { return output; }
+		
+		@Override
+		public String toString() 
+		{ 
+			return String.format("%s %s: %d comandi in %.3f ms, impronta %s%s", superato ? "OK  " : "FAIL", copione, comandi, durata / 1e6, impronta, 
+								 errore == null ? "" : " (" + errore + ")"); 
+		}
+	}
+}
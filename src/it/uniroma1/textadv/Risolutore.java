@@ -0,0 +1,159 @@
+package it.uniroma1.textadv;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma1.textadv.DefinizioneMondo.DefinizioneStanza;
+
+/*
+ * Classe che riconosce i nomi (anche di piu parole) degli elementi del mondo dentro un comando.
+ * I nomi di stanze, oggetti, personaggi e link vengono inseriti parola per parola in un albero di prefissi
+ * costruito al caricamento del mondo: la ricerca segue le parole del comando e restituisce il nome piu lungo trovato,
+ * in un tempo che dipende solo dalla lunghezza del comando e non dal numero di elementi del mondo.
+ * I nomi fino a PERMUTAZIONI parole vengono riconosciuti anche con le parole in un altro ordine
+ * (in italiano l'aggettivo pu stare prima o dopo il nome: "vecchia chiave", "chiave vecchia"):
+ * le permutazioni vengono provate durante la ricerca, cosi l'albero resta grande quanto i nomi anche nei mondi con milioni di elementi.
+ * Una volta costruito non viene piu modificato, quindi pu essere condiviso tra le partite.
+ * 
+ * @author Valerio Mesiti
+ */
+class Risolutore {
+
+	private static final int PERMUTAZIONI = 3;
+	
+	/*
+	 * Gli ordini diversi da quello scritto in cui provare le parole, per ogni lunghezza fino a PERMUTAZIONI.
+	 */
+	private static final int[][][] ORDINI = { {}, {}, { {1, 0} }, { {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0} } };
+	
+	private final Voce radice = new Voce();
+	
+	/*
+	 * Costruttore
+	 * 
+	 * @param	nomi	i nomi degli elementi del mondo
+	 */
+	Risolutore(Collection<String> nomi)
+	{
+		Tokenizzatore tokenizzatore = new Tokenizzatore(List.of());
+		for(String nome : nomi) 
+		{
+			tokenizzatore.tokenizza(nome.toLowerCase());
+			inserisci(tokenizzatore, nome);
+		}
+	}
+	
+	/*
+	 * Metodo che crea il risolutore con i nomi di tutti gli elementi della definizione di un mondo.
+	 * 
+	 * @param	d	la definizione del mondo
+	 * @return		il risolutore del mondo
+	 */
+	static Risolutore fromDefinizione(DefinizioneMondo d)
+	{
+		List<String> nomi = new ArrayList<>();
+		for(DefinizioneStanza s : d.getStanze()) nomi.add(s.getNome());
+		for(String[] riga : d.getLinks()) nomi.add(riga[0]);
+		for(String[] riga : d.getOggetti()) nomi.add(riga[0]);
+		for(String[] riga : d.getPersonaggi()) nomi.add(riga[0]);
+		return new Risolutore(nomi);
+	}
+	
+	/*
+	 * Metodo che inserisce un nome nell'albero seguendo le sue parole, senza sovrascrivere un nome gi presente.
+	 */
+	private void inserisci(List<String> parole, String nome)
+	{
+		if(parole.isEmpty()) return;
+		Voce nodo = radice;
+		for(String p : parole) 
+		{
+			if(nodo.figli == null) nodo.figli = new HashMap<>(4);
+			nodo = nodo.figli.computeIfAbsent(p, k -> new Voce());
+		}
+		if(nodo.nome == null) { nodo.nome = nome; nodo.parole = parole.size(); }
+	}
+	
+	/*
+	 * Metodo che segue nell'albero le parole del comando a partire da da, nell'ordine indicato.
+	 * 
+	 * @return	il nodo raggiunto, null se le parole non sono l'inizio di nessun nome
+	 */
+	private Voce segui(List<String> parole, int da, int[] ordine)
+	{
+		Voce nodo = radice;
+		for(int i = 0; i < ordine.length && nodo != null; i++) nodo = nodo.figlio(parole.get(da + ordine[i]));
+		return nodo;
+	}
+	
+	/*
+	 * Metodo che cerca il nome piu lungo che inizia alla parola da del comando.
+	 * Se le parole nell'ordine scritto formano un nome piu corto di PERMUTAZIONI parole,
+	 * prova anche gli altri ordini delle parole successive: vince il nome piu lungo.
+	 * 
+	 * @param	parole	le parole chiave del comando
+	 * @param	da		la posizione della prima parola del nome
+	 * @return			il nome trovato, null se nessun nome inizia in quella posizione
+	 */
+	Voce cerca(List<String> parole, int da)
+	{
+		Voce nodo = radice, trovata = null;
+		for(int i = da; i < parole.size() && (nodo = nodo.figlio(parole.get(i))) != null; i++) if(nodo.nome != null) trovata = nodo;
+		
+		int lunghezza = (trovata == null) ? 0 : trovata.parole;
+		for(int n = Math.min(PERMUTAZIONI, parole.size() - da); n > lunghezza && n > 1; n--)
+			for(int[] ordine : ORDINI[n])
+			{
+				Voce v = segui(parole, da, ordine);
+				if(v != null && v.nome != null) return v;
+			}
+		return trovata;
+	}
+	
+	/*
+	 * Metodo che cerca il primo nome che compare nel comando a partire dalla parola da,
+	 * saltando le parole che non fanno parte di nessun nome (come "su").
+	 * 
+	 * @param	parole	le parole chiave del comando
+	 * @param	da		la posizione da cui iniziare a cercare
+	 * @return			il primo nome trovato, null se non ce ne sono
+	 */
+	Voce cercaDopo(List<String> parole, int da)
+	{
+		for(int i = da; i < parole.size(); i++) 
+		{
+			Voce v = cerca(parole, i);
+			if(v != null) return v;
+		}
+		return null;
+	}
+	
+	/*
+	 * Classe che rappresenta un nodo dell'albero dei nomi: se un nome termina nel nodo
+	 * contiene il nome dell'elemento (come scritto nel file del mondo) e il numero delle sue parole.
+	 */
+	static class Voce
+	{
+		private Map<String, Voce> figli;
+		private String nome;
+		private int parole;
+		
+		/*
+		 * Getter del nodo che segue questo con la parola in input, null se non c'.
+		 */
+		private Voce figlio(String parola) { return (figli == null) ? null : figli.get(parola); }
+		
+		/*
+		 * Getter del nome dell'elemento.
+		 */
+		String getNome() { return nome; }
+		
+		/*
+		 * Getter del numero di parole del nome.
+		 */
+		int getParole() { return parole; }
+	}
+}
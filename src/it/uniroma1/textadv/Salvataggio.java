@@ -0,0 +1,180 @@
+package it.uniroma1.textadv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Classe che salva una partita in corso in un formato binario compatto e la ripristina su una nuova partita,
+ * senza rileggere il file .game. Viene scritto solo cio che  diverso dal mondo appena caricato:
+ * il file contiene, nell'ordine, un'intestazione (numero magico, versione, nome del mondo e numero di link, oggetti e personaggi),
+ * la stanza in cui si trova il giocatore, se ha vinto e lo stato del generatore di numeri casuali, i cambiamenti di {@link StatoMondo} (le parole di bit diverse da zero
+ * e gli utensili cambiati), gli oggetti che hanno cambiato luogo e infine l'inventario, con ogni elemento indicato dal suo numero.
+ * Gli oggetti spostati in una stanza sono scritti nell'ordine in cui vi si trovano, cosi il ripristino li rimette nello stesso ordine.
+ * Il salvataggio di una partita appena iniziata occupa poche decine di byte, qualunque sia la grandezza del mondo.
+ *
+ * @author Valerio Mesiti
+ */
+public class Salvataggio {
+
+	private static final int MAGICO = 0x5A414B53;
+	private static final int VERSIONE = 2;
+	private static final byte OGGETTO = 0;
+	private static final byte PERSONAGGIO = 1;
+
+	/*
+	 * Costruttore privato, la classe offre solo metodi statici.
+	 */
+	private Salvataggio() {}
+
+	/*
+	 * Metodo che salva una partita in memoria.
+	 *
+	 * @param	m	il mondo della partita
+	 * @return		il salvataggio
+	 */
+	public static byte[] salva(Mondo m)
+	{
+		ByteArrayOutputStream dati = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(dati)) { scrivi(m, out); }
+		catch(IOException e) { throw new IllegalStateException(e); }
+		return dati.toByteArray();
+	}
+
+	/*
+	 * Metodo che salva una partita su file.
+	 *
+	 * @param	m		il mondo della partita
+	 * @param	file	il path del file da scrivere
+	 */
+	public static void salva(Mondo m, Path file) throws IOException { Files.write(file, salva(m)); }
+
+	/*
+	 * Metodo che ripristina una partita salvata su una nuova partita del modello.
+	 *
+	 * @param	modello	il modello del mondo su cui era stata giocata la partita
+	 * @param	dati	il salvataggio
+	 * @return			il mondo della partita ripristinata
+	 */
+	public static Mondo ripristina(ModelloMondo modello, byte[] dati) throws IOException
+	{
+		Mondo m = modello.nuovaPartita();
+		ripristina(m, dati);
+		return m;
+	}
+
+	/*
+	 * Metodo che ripristina una partita salvata su file su una nuova partita del modello.
+	 *
+	 * @param	modello	il modello del mondo su cui era stata giocata la partita
+	 * @param	file	il path del salvataggio
+	 * @return			il mondo della partita ripristinata
+	 */
+	public static Mondo ripristina(ModelloMondo modello, Path file) throws IOException { return ripristina(modello, Files.readAllBytes(file)); }
+
+	/*
+	 * Metodo che ripristina una partita salvata su un mondo appena caricato dallo stesso file .game.
+	 *
+	 * @param	m		il mondo, su cui non deve essere stato ancora eseguito nessun comando
+	 * @param	dati	il salvataggio
+	 */
+	public static void ripristina(Mondo m, byte[] dati) throws IOException
+	{
+		try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(dati))) { leggi(m, in); }
+	}
+
+	/*
+	 * Metodo che scrive il salvataggio di una partita.
+	 *
+	 * @param	m	il mondo della partita
+	 * @param	out	il flusso su cui scrivere
+	 */
+	private static void scrivi(Mondo m, DataOutputStream out) throws IOException
+	{
+		StatoMondo stato = m.getStatoPartita(), iniziale = m.getStatoIniziale();
+		out.writeInt(MAGICO);
+		out.writeInt(VERSIONE);
+		out.writeUTF(String.valueOf(m.getName()));
+		out.writeInt(stato.getNumeroLinks());
+		out.writeInt(stato.getNumeroOggetti());
+		out.writeInt(stato.getNumeroPersonaggi());
+		out.writeInt(m.getPosizione().getId());
+		out.writeBoolean(m.getPlayer().haVinto());
+		out.writeLong(m.getSeme());
+		stato.scriviCambiamenti(out);
+
+		List<int[]> spostati = new ArrayList<>();
+		for(int o = 0; o < stato.getNumeroOggetti(); o++)
+		{
+			int luogo = stato.getLuogo(o);
+			if(luogo == ((iniziale == null) ? StatoMondo.NESSUNA : iniziale.getLuogo(o))) continue;
+			int ordine = (luogo < 0) ? 0 : m.getStanzaIstanziata(luogo).getItems().indexOf(m.getOggetto(o));
+			spostati.add(new int[] { o, luogo, ordine });
+		}
+		spostati.sort(Comparator.<int[]>comparingInt(s -> s[1]).thenComparingInt(s -> s[2]));
+		out.writeInt(spostati.size());
+		for(int[] s : spostati)
+		{
+			out.writeInt(s[0]);
+			out.writeInt(s[1]);
+		}
+
+		List<Inventario> inventario = m.getPlayer().getInventory();
+		out.writeInt(inventario.size());
+		for(Inventario i : inventario)
+		{
+			if(i instanceof Oggetto o && o.getStato() == stato) { out.writeByte(OGGETTO); out.writeInt(o.getNumero()); }
+			else if(i instanceof Character c && c.getNumero() != StatoMondo.NESSUNA) { out.writeByte(PERSONAGGIO); out.writeInt(c.getNumero()); }
+			else throw new IllegalStateException(i.getNome()+" non fa parte del mondo "+m.getName());
+		}
+	}
+
+	/*
+	 * Metodo che legge un salvataggio e lo applica al mondo.
+	 * Gli oggetti vengono spostati con i metodi delle stanze, cosi le stanze gia istanziate restano allineate allo stato
+	 * e quelle ancora nel modello riceveranno solo gli oggetti che lo stato vi colloca.
+	 *
+	 * @param	m	il mondo appena caricato
+	 * @param	in	il flusso da cui leggere
+	 */
+	private static void leggi(Mondo m, DataInputStream in) throws IOException
+	{
+		StatoMondo stato = m.getStatoPartita();
+		if(in.readInt() != MAGICO || in.readInt() != VERSIONE) throw new IOException("non  un salvataggio valido");
+		String nome = in.readUTF();
+		if(!nome.equals(String.valueOf(m.getName()))) throw new IOException("il salvataggio  del mondo "+nome+", non di "+m.getName());
+		if(in.readInt() != stato.getNumeroLinks() || in.readInt() != stato.getNumeroOggetti() || in.readInt() != stato.getNumeroPersonaggi())
+			throw new IOException("il salvataggio non corrisponde agli elementi del mondo "+nome);
+		int posizione = in.readInt();
+		boolean vittoria = in.readBoolean();
+		m.setSeme(in.readLong());
+		stato.leggiCambiamenti(in);
+
+		for(int n = in.readInt(); n > 0; n--)
+		{
+			int o = in.readInt(), luogo = in.readInt();
+			Oggetto oggetto = m.getOggetto(o);
+			int precedente = stato.getLuogo(o);
+			Stanza s = (precedente < 0) ? null : m.getStanzaIstanziata(precedente);
+			if(s != null) s.removeItem(oggetto);
+			if(luogo >= 0) m.getStanza(luogo).addItem(oggetto);
+			else stato.setLuogo(o, luogo);
+		}
+
+		for(int n = in.readInt(); n > 0; n--)
+		{
+			byte tipo = in.readByte();
+			int numero = in.readInt();
+			m.getPlayer().addInventory((Inventario) ((tipo == OGGETTO) ? m.getOggetto(numero) : m.getPersonaggio(numero)));
+		}
+		m.getPlayer().setVittoria(vittoria);
+		m.setPosizione(m.getStanza(posizione));
+	}
+}
@@ -0,0 +1,106 @@
+package it.uniroma1.textadv;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+
+/*
+ * Classe che permette di giocare in rete: ogni connessione TCP diventa una {@link Sessione} con il proprio mondo,
+ * creato sullo stesso {@link ModelloMondo} letto una sola volta all'avvio.
+ * Il protocollo  a righe: il client invia un comando per riga e riceve le risposte del gioco seguite dal prompt.
+ * Ogni sessione viene servita da un proprio thread, virtuale se la JVM li mette a disposizione.
+ * Il server attiva le {@link Metriche} e le espone via JMX, cosi la latenza di ogni verbo si legge da qualunque console JMX.
+ * 
+ * @author Valerio Mesiti
+ */
+public class Server {
+
+	private static final String PROMPT = "Inserisci un comando > ";
+	
+	private final ModelloMondo modello;
+	private final int porta;
+	
+	/*
+	 * Costruttore.
+	 * 
+	 * @param	modello	il modello del mondo da cui creare le partite
+	 * @param	porta	la porta su cui accettare le connessioni
+	 */
+	public Server(ModelloMondo modello, int porta) { this.modello = modello; this.porta = porta; }
+	
+	/*
+	 * Punto d'ingresso del server.
+	 * 
+	 * @param	args	il file .game del mondo e, opzionalmente, la porta (4000 se non indicata)
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException, NoSuchMethodException, JMException 
+	{ 
+		Metriche.attiva().esponi();
+		new Server(ModelloMondo.fromFile(Path.of(args[0])), (args.length > 1) ? Integer.parseInt(args[1]) : 4000).avvia(); 
+	}
+	
+	/*
+	 * Metodo che accetta connessioni finche il processo non viene terminato.
+	 */
+	public void avvia() throws IOException
+	{
+		ExecutorService esecutore = esecutore();
+		try(ServerSocket server = new ServerSocket(porta))
+		{
+			while(true) 
+			{
+				Socket socket = server.accept();
+				esecutore.execute(() -> servi(socket));
+			}
+		}
+		finally { esecutore.shutdown(); }
+	}
+	
+	/*
+	 * Metodo che gioca una partita su una connessione: crea la sessione e ne esegue i comandi
+	 * finche il client non chiude la connessione, esce con q o vince.
+	 * 
+	 * @param	socket	la connessione del giocatore
+	 */
+	private void servi(Socket socket)
+	{
+		try(socket; 
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8))
+		{
+			Sessione sessione = new Sessione(modello.nuovaPartita(), new Uscita.Buffer(out));
+			sessione.inizia();
+			String riga;
+			do 
+			{
+				out.print(PROMPT);
+				out.flush();
+				riga = in.readLine();
+			} while(riga != null && sessione.esegui(riga));
+			out.flush();
+		}
+		catch(IOException e) { System.err.println("Sessione terminata: "+e); }
+	}
+	
+	/*
+	 * Metodo che crea l'esecutore delle sessioni: un thread virtuale per sessione se la JVM li supporta,
+	 * altrimenti un pool di thread che cresce con il numero di connessioni.
+	 * 
+	 * @return	l'esecutore delle sessioni
+	 */
+	static ExecutorService esecutore()
+	{
+		try { return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null); }
+		catch(ReflectiveOperationException e) { return Executors.newCachedThreadPool(); }
+	}
+}
@@ -0,0 +1,60 @@
+package it.uniroma1.textadv;
+
+/*
+ * Classe che identifica una partita: possiede il proprio mondo di gioco (con il suo giocatore),
+ * il proprio motore e il flusso su cui vengono scritte le risposte, cosi piu partite possono
+ * essere giocate in contemporanea nello stesso processo senza condividere stato.
+ * 
+ * @author Valerio Mesiti
+ */
+public class Sessione {
+
+	private final Mondo mondo;
+	private final Gioco gioco = new Gioco();
+	private boolean chiusa;
+	
+	/*
+	 * Costruttore.
+	 * 
+	 * @param	mondo	il mondo di gioco della partita, non condiviso con altre sessioni
+	 * @param	output	l'uscita su cui scrivere le risposte del gioco
+	 */
+	public Sessione(Mondo mondo, Uscita output) 
+	{ 
+		this.mondo = mondo; 
+		mondo.setOutput(output); 
+	}
+	
+	/*
+	 * Metodo che d il benvenuto al giocatore.
+	 */
+	public void inizia() { gioco.benvenuto(mondo); mondo.getOutput().flush(); }
+	
+	/*
+	 * Metodo che esegue un comando del giocatore, come nella modalit normale di {@link Gioco#play(Mondo)}.
+	 * 
+	 * @param	comando	il comando inserito
+	 * @return			true se la partita continua, false se il giocatore  uscito o ha vinto
+	 */
+	public boolean esegui(String comando)
+	{
+		String input = comando.trim().toLowerCase();
+		if(input.equals("q")) chiusa = true;
+		mondo.getOutput().println(gioco.leggiComando(input, mondo));
+		if(isAttiva()) mondo.getOutput().flush();
+		else mondo.getOutput().chiudi();
+		return isAttiva();
+	}
+	
+	/*
+	 * Getter dello stato della partita.
+	 * 
+	 * @return	true se il giocatore non  uscito e non ha ancora vinto
+	 */
+	public boolean isAttiva() { return !chiusa && !mondo.getPlayer().haVinto(); }
+	
+	/*
+	 * Getter del mondo di gioco.
+	 */
+	public Mondo getMondo() { return mondo; }
+}
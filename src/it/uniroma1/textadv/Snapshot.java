@@ -0,0 +1,249 @@
+package it.uniroma1.textadv;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma1.textadv.DefinizioneMondo.DefinizioneStanza;
+
+/*
+ * Classe che compila un file .game in un formato binario compatto e lo rilegge senza passare dal testo.
+ * Il file contiene, nell'ordine:
+ * un'intestazione (numero magico e versione), una tabella di tutte le stringhe usate (ognuna scritta una sola volta),
+ * nome, descrizione, partenza e giocatore del mondo, le righe di oggetti, personaggi e link come indici nella tabella,
+ * le stanze con i loro oggetti e personaggi indicati dal numero dell'elemento e infine la tabella piatta delle uscite,
+ * quattro interi per stanza nell'ordine di {@link Direzione}.
+ * In lettura il file viene mappato in memoria.
+ * 
+ * @author Valerio Mesiti
+ */
+public class Snapshot {
+
+	private static final int MAGICO = 0x5A414B57;
+	private static final int VERSIONE = 1;
+	private static final int NESSUNO = -1;
+	
+	/*
+	 * Costruttore privato, la classe offre solo metodi statici.
+	 */
+	private Snapshot() {}
+	
+	/*
+	 * Punto d'ingresso per compilare un mondo da riga di comando.
+	 * 
+	 * @param	args	il file .game da compilare e il file binario da scrivere
+	 */
+	public static void main(String[] args) throws IOException { compila(Path.of(args[0]), Path.of(args[1])); }
+	
+	/*
+	 * Metodo che compila il file .game in input nel file binario in output.
+	 * 
+	 * @param	game		il path del file .game
+	 * @param	snapshot	il path del file binario da scrivere
+	 */
+	public static void compila(Path game, Path snapshot) throws IOException { scrivi(DefinizioneMondo.fromFile(game), snapshot); }
+	
+	/*
+	 * Metodo che scrive la definizione di un mondo nel formato binario.
+	 * 
+	 * @param	d			la definizione del mondo
+	 * @param	snapshot	il path del file binario da scrivere
+	 */
+	public static void scrivi(DefinizioneMondo d, Path snapshot) throws IOException
+	{
+		Map<String, Integer> indici = new HashMap<>();
+		List<String> tabella = new ArrayList<>();
+		Map<String, Integer> oggetti = numera(d.getOggetti());
+		Map<String, Integer> personaggi = numera(d.getPersonaggi());
+		Map<String, Integer> links = numera(d.getLinks());
+		
+		for(String s : new String[] { d.getNome(), d.getDescrizione(), d.getStart(), d.getGiocatore() }) stringa(s, indici, tabella);
+		for(List<String[]> righe : List.of(d.getOggetti(), d.getPersonaggi(), d.getLinks())) for(String[] riga : righe) for(String s : riga) stringa(s, indici, tabella);
+		for(DefinizioneStanza s : d.getStanze())
+		{
+			stringa(s.getNome(), indici, tabella);
+			stringa(s.getDescrizione(), indici, tabella);
+			s.getOggetti().forEach(o -> stringa(o, indici, tabella));
+			s.getPersonaggi().forEach(p -> stringa(p, indici, tabella));
+			s.getUscite().values().forEach(l -> stringa(l, indici, tabella));
+		}
+		
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshot))))
+		{
+			out.writeInt(MAGICO);
+			out.writeInt(VERSIONE);
+			out.writeInt(tabella.size());
+			for(String s : tabella)
+			{
+				byte[] b = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(b.length);
+				out.write(b);
+			}
+			
+			for(String s : new String[] { d.getNome(), d.getDescrizione(), d.getStart(), d.getGiocatore() }) out.writeInt(indice(s, indici));
+			for(List<String[]> righe : List.of(d.getOggetti(), d.getPersonaggi(), d.getLinks()))
+			{
+				out.writeInt(righe.size());
+				for(String[] riga : righe)
+				{
+					out.writeInt(riga.length);
+					for(String s : riga) out.writeInt(indice(s, indici));
+				}
+			}
+			
+			out.writeInt(d.getStanze().size());
+			for(DefinizioneStanza s : d.getStanze())
+			{
+				out.writeInt(indice(s.getNome(), indici));
+				out.writeInt(indice(s.getDescrizione(), indici));
+				out.writeInt(s.getOggetti().size());
+				for(String o : s.getOggetti()) out.writeInt(riferimento(o, oggetti, indici));
+				out.writeInt(s.getPersonaggi().size());
+				for(String p : s.getPersonaggi()) out.writeInt(riferimento(p, personaggi, indici));
+			}
+			for(DefinizioneStanza s : d.getStanze())
+				for(Direzione dir : Direzione.values())
+				{
+					String l = s.getUscite().get(dir);
+					out.writeInt((l == null) ? NESSUNO : riferimento(l, links, indici));
+				}
+		}
+	}
+	
+	/*
+	 * Metodo che legge un file binario scritto da {@link #scrivi(DefinizioneMondo, Path)}.
+	 * 
+	 * Un file troncato o danneggiato fa fallire la lettura con una IOException che nomina il file.
+	 * 
+	 * @param	snapshot	il path del file binario
+	 * @return				la definizione del mondo
+	 */
+	public static DefinizioneMondo leggi(Path snapshot) throws IOException
+	{
+		ByteBuffer buf;
+		try(FileChannel canale = FileChannel.open(snapshot, StandardOpenOption.READ)) { buf = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size()); }
+		try { return leggi(buf, snapshot); }
+		catch(BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) { throw new IOException(snapshot+"  troncato o danneggiato", e); }
+	}
+	
+	/*
+	 * Metodo che decodifica il contenuto di un file binario gia mappato in memoria.
+	 */
+	private static DefinizioneMondo leggi(ByteBuffer buf, Path snapshot) throws IOException
+	{
+		if(buf.getInt() != MAGICO || buf.getInt() != VERSIONE) throw new IOException(snapshot+" non  un mondo precompilato valido");
+		String[] tabella = new String[lunghezza(buf, 4)];
+		for(int i = 0; i < tabella.length; i++)
+		{
+			byte[] b = new byte[lunghezza(buf, 1)];
+			buf.get(b);
+			tabella[i] = new String(b, StandardCharsets.UTF_8);
+		}
+		
+		DefinizioneMondo d = new DefinizioneMondo();
+		d.setNome(stringa(buf.getInt(), tabella));
+		d.setDescrizione(stringa(buf.getInt(), tabella));
+		d.setStart(stringa(buf.getInt(), tabella));
+		d.setGiocatore(stringa(buf.getInt(), tabella));
+		List<String[]> oggetti = righe(buf, tabella), personaggi = righe(buf, tabella), links = righe(buf, tabella);
+		oggetti.forEach(d::addOggetto);
+		personaggi.forEach(d::addPersonaggio);
+		links.forEach(d::addLink);
+		
+		List<DefinizioneStanza> stanze = new ArrayList<>();
+		for(int i = buf.getInt(); i > 0; i--)
+		{
+			DefinizioneStanza s = new DefinizioneStanza(stringa(buf.getInt(), tabella));
+			s.setDescrizione(stringa(buf.getInt(), tabella));
+			for(int j = buf.getInt(); j > 0; j--) s.addOggetto(nome(buf.getInt(), oggetti, tabella));
+			for(int j = buf.getInt(); j > 0; j--) s.addPersonaggio(nome(buf.getInt(), personaggi, tabella));
+			stanze.add(s);
+			d.addStanza(s);
+		}
+		for(DefinizioneStanza s : stanze)
+			for(Direzione dir : Direzione.values())
+			{
+				int l = buf.getInt();
+				if(l != NESSUNO) s.addUscita(dir, nome(l, links, tabella));
+			}
+		return d;
+	}
+	
+	/*
+	 * Metodo che assegna ad ogni elemento un numero in base alla sua posizione nel blocco;
+	 * come per le ricerche nel mondo, a parita di nome vale il primo.
+	 */
+	private static Map<String, Integer> numera(List<String[]> righe)
+	{
+		Map<String, Integer> numeri = new HashMap<>();
+		for(int i = 0; i < righe.size(); i++) numeri.putIfAbsent(righe.get(i)[0].toLowerCase(), i);
+		return numeri;
+	}
+	
+	/*
+	 * Metodo che aggiunge una stringa alla tabella se non  gia presente.
+	 */
+	private static void stringa(String s, Map<String, Integer> indici, List<String> tabella) { if(s != null && indici.putIfAbsent(s, tabella.size()) == null) tabella.add(s); }
+	
+	/*
+	 * Metodo che restituisce la posizione di una stringa nella tabella, NESSUNO per null.
+	 */
+	private static int indice(String s, Map<String, Integer> indici) { return (s == null) ? NESSUNO : indici.get(s); }
+	
+	/*
+	 * Metodo che codifica il riferimento ad un elemento: il suo numero se  definito nel blocco,
+	 * altrimenti il nome stesso (come per le uscite che portano direttamente ad una stanza) codificato in negativo.
+	 */
+	private static int riferimento(String nome, Map<String, Integer> numeri, Map<String, Integer> indici)
+	{
+		Integer n = numeri.get(nome.toLowerCase());
+		return (n != null) ? n : -indice(nome, indici)-2;
+	}
+	
+	/*
+	 * Metodo che decodifica una stringa della tabella.
+	 */
+	private static String stringa(int i, String[] tabella) { return (i == NESSUNO) ? null : tabella[i]; }
+	
+	/*
+	 * Metodo che decodifica il riferimento ad un elemento scritto da {@link #riferimento(String, Map, Map)}.
+	 */
+	private static String nome(int i, List<String[]> righe, String[] tabella) { return (i >= 0) ? righe.get(i)[0] : tabella[-i-2]; }
+	
+	/*
+	 * Metodo che legge la lunghezza di un array, controllando che i suoi elementi stiano nei byte rimasti
+	 * prima di allocarlo, cosi un file danneggiato non chiede array enormi.
+	 */
+	private static int lunghezza(ByteBuffer buf, int dimensione)
+	{
+		int n = buf.getInt();
+		if(n < 0 || (long) n * dimensione > buf.remaining()) throw new BufferUnderflowException();
+		return n;
+	}
+	
+	/*
+	 * Metodo che legge un blocco di righe.
+	 */
+	private static List<String[]> righe(ByteBuffer buf, String[] tabella)
+	{
+		List<String[]> righe = new ArrayList<>();
+		for(int i = buf.getInt(); i > 0; i--)
+		{
+			String[] riga = new String[lunghezza(buf, 4)];
+			for(int j = 0; j < riga.length; j++) riga[j] = tabella[buf.getInt()];
+			righe.add(riga);
+		}
+		return righe;
+	}
+}
@@ -0,0 +1,500 @@
+package it.uniroma1.textadv;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/*
+ * Classe che verifica se un mondo .game si pu vincere, esplorando gli stati della partita in ampiezza.
+ * Uno stato  la posizione del giocatore piu, codificati in un array di bit, il luogo, la visibilit e l'aspetto
+ * (il testo di guarda(), che cambia quando un contenitore si apre o il secchio si riempie) di ogni oggetto rilevante,
+ * il luogo e lo stato tranquillo di ogni personaggio rilevante e lo stato aperto/chiuso di ogni link con il suo utensile.
+ * Gli stati gi visitati vengono scartati tramite un insieme hash condiviso; ogni livello della ricerca viene espanso in parallelo.
+ *
+ * Le mosse sono i comandi veri del gioco eseguiti su una partita del modello, cosi il solutore segue esattamente il motore:
+ * per espandere uno stato la partita viene ricreata rigiocando le mosse che lo hanno prodotto.
+ * Gli spostamenti non sono mosse: il giocatore pu agire in ogni stanza raggiungibile per link aperti,
+ * e nella soluzione scritta ogni cambio di stanza diventa un comando "vai a *stanza*".
+ * Per tenere piccolo lo spazio degli stati vengono considerati solo gli oggetti e i personaggi che servono a qualcosa:
+ * quelli nominati nelle righe di altri elementi o dal motore, quelli che agiscono su altri elementi, il tesoro
+ * e gli attrezzi; pi attrezzi dello stesso tipo portano a stati equivalenti ma distinti, che l'insieme dei visitati non fonde,
+ * quindi costano stati in pi ma non tolgono soluzioni. Inoltre un oggetto che si pu prendere viene preso subito, senza provare le alternative,
+ * perch tenere un oggetto nell'inventario non impedisce mai un'altra mossa.
+ * La risposta "nessuna soluzione" vale quindi per le mosse sugli elementi rilevanti.
+ *
+ * @author Valerio Mesiti
+ */
+public class Solutore {
+
+	private static final Set<String> NOMI_MOTORE = Set.of("cacciavite", "camino", "soldi", "spada");
+	private static final Set<String> ATTREZZI = Set.of("Martello", "Secchio", "Cacciavite", "Pozzo");
+	private static final int BIT_VARIANTE = 16;
+
+	private final ModelloMondo modello;
+	private final int thread;
+	private final int limite;
+	private final List<String> oggetti = new ArrayList<>();
+	private final List<String> personaggi = new ArrayList<>();
+	private final List<String> links = new ArrayList<>();
+	private final int bitStanza;
+	private final int bitStato;
+	private final Map<String, Integer> varianti = new ConcurrentHashMap<>();
+	private final AtomicInteger nuovaVariante = new AtomicInteger();
+	private final Set<Stato> visitati = ConcurrentHashMap.newKeySet();
+	private final AtomicReference<Nodo> vincente = new AtomicReference<>();
+	private volatile boolean interrotta;
+	private final ThreadLocal<Gioco> giochi = ThreadLocal.withInitial(Gioco::new);
+
+	/*
+	 * Costruttore: sceglie gli elementi rilevanti del mondo.
+	 *
+	 * @param	modello	il modello del mondo da risolvere
+	 * @param	thread	il numero di stati da espandere in parallelo
+	 * @param	limite	il numero massimo di stati da visitare prima di arrendersi
+	 */
+	public Solutore(ModelloMondo modello, int thread, int limite)
+	{
+		this.modello = modello;
+		this.thread = thread;
+		this.limite = limite;
+		List<String[]> righeOggetti = new ArrayList<>(modello.getNumeroOggetti());
+		for(int o = 0; o < modello.getNumeroOggetti(); o++) righeOggetti.add(modello.getRigaOggetto(o));
+		List<String[]> righePersonaggi = new ArrayList<>(modello.getNumeroPersonaggi());
+		for(int p = 0; p < modello.getNumeroPersonaggi(); p++) righePersonaggi.add(modello.getRigaPersonaggio(p));
+
+		Set<String> citati = new HashSet<>(NOMI_MOTORE);
+		for(List<String[]> righe : List.of(righeOggetti, righePersonaggi)) for(String[] riga : righe) for(int i = 2; i < riga.length; i++) citati.add(chiave(riga[i]));
+		Set<String> scelti = new LinkedHashSet<>();
+		for(String[] riga : righeOggetti)
+			if(riga.length > 2 || citati.contains(chiave(riga[0])) || riga[1].equals("Tesoro") || ATTREZZI.contains(riga[1])) scelti.add(riga[0]);
+		oggetti.addAll(scelti);
+		scelti.clear();
+		for(String[] riga : righePersonaggi) if(riga.length > 2 || citati.contains(chiave(riga[0]))) scelti.add(riga[0]);
+		personaggi.addAll(scelti);
+		scelti.clear();
+		for(int l = 0; l < modello.getNumeroLinks(); l++) scelti.add(modello.getRigaLink(l)[0]);
+		links.addAll(scelti);
+
+		bitStanza = 32 - Integer.numberOfLeadingZeros(modello.getGrafo().getStanze() + 2);
+		bitStato = oggetti.size() * (bitStanza + 1 + BIT_VARIANTE) + personaggi.size() * (bitStanza + 1) + links.size() * 2;
+	}
+
+	/*
+	 * Punto d'ingresso del solutore.
+	 *
+	 * @param	args	i file .game (o le cartelle che li contengono) da risolvere;
+	 * 					-t N usa N thread, -m N visita al massimo N stati per mondo (1000000),
+	 * 					-s scrive la soluzione trovata accanto al mondo, nel file *nome*.soluzione.ff
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException, NoSuchMethodException, InterruptedException, ExecutionException
+	{
+		int thread = Runtime.getRuntime().availableProcessors(), limite = 1_000_000;
+		boolean scrivi = false;
+		List<Path> mondi = new ArrayList<>();
+		for(int i = 0; i < args.length; i++)
+			switch(args[i])
+			{
+				case "-t": thread = Integer.parseInt(args[++i]); break;
+				case "-m": limite = Integer.parseInt(args[++i]); break;
+				case "-s": scrivi = true; break;
+				default: mondi.addAll(mondi(Path.of(args[i])));
+			}
+
+		int risolti = 0;
+		for(Path mondo : mondi)
+		{
+			Esito e = new Solutore(ModelloMondo.fromFile(mondo), thread, limite).risolvi();
+			System.out.println(mondo+": "+e);
+			if(e.getSoluzione() == null) continue;
+			risolti++;
+			if(scrivi)
+			{
+				String nome = mondo.getFileName().toString();
+				Files.write(mondo.resolveSibling(nome.substring(0, nome.lastIndexOf('.'))+".soluzione.ff"), e.getSoluzione());
+			}
+		}
+		System.out.printf("%d mondi, %d risolti, %d non risolti%n", mondi.size(), risolti, mondi.size() - risolti);
+		if(risolti < mondi.size()) System.exit(1);
+	}
+
+	/*
+	 * Metodo che raccoglie i mondi da un file o, se  una cartella, da tutti i file .game che contiene.
+	 */
+	private static List<Path> mondi(Path p) throws IOException
+	{
+		if(!Files.isDirectory(p)) return List.of(p);
+		try(Stream<Path> s = Files.walk(p)) { return s.filter(f -> f.toString().endsWith(".game")).sorted().toList(); }
+	}
+
+	/*
+	 * Metodo che esplora gli stati del mondo un livello alla volta, finch non trova una vittoria,
+	 * non esaurisce gli stati raggiungibili o non supera il limite di stati.
+	 * La soluzione trovata viene rigiocata da capo su una nuova partita prima di essere restituita.
+	 *
+	 * @return	l'esito della ricerca
+	 */
+	public Esito risolvi() throws InterruptedException, ExecutionException
+	{
+		long inizio = System.nanoTime();
+		Mondo m = nuovaPartita();
+		Nodo radice = new Nodo(null, null, stato(m));
+		visitati.add(radice.stato);
+
+		List<Nodo> frontiera = List.of(radice);
+		ExecutorService esecutore = Executors.newFixedThreadPool(thread);
+		try
+		{
+			while(!frontiera.isEmpty() && vincente.get() == null && !interrotta)
+			{
+				List<Future<List<Nodo>>> futuri = new ArrayList<>();
+				for(Nodo n : frontiera) futuri.add(esecutore.submit(() -> espandi(n)));
+				List<Nodo> prossima = new ArrayList<>();
+				for(Future<List<Nodo>> f : futuri) prossima.addAll(f.get());
+				frontiera = prossima;
+			}
+		}
+		finally { esecutore.shutdown(); }
+
+		List<String> soluzione = (vincente.get() == null) ? null : copione(vincente.get());
+		if(soluzione != null && !verifica(soluzione)) throw new IllegalStateException("La soluzione trovata non vince la partita: "+soluzione);
+		return new Esito(soluzione, interrotta && soluzione == null, visitati.size(), System.nanoTime() - inizio);
+	}
+
+	/*
+	 * Metodo che espande uno stato: prova tutte le mosse possibili e restituisce gli stati nuovi che producono.
+	 * Una mossa che non cambia niente lascia la partita com', altrimenti la partita viene ricreata per la mossa seguente;
+	 * una mossa che fa fallire il comando con un'eccezione non produce stati.
+	 * L'espansione si ferma appena l'insieme dei visitati raggiunge il limite, e la ricerca viene segnata come interrotta.
+	 *
+	 * @param	n	il nodo dello stato da espandere
+	 * @return		i nodi degli stati nuovi
+	 */
+	private List<Nodo> espandi(Nodo n)
+	{
+		Gioco g = giochi.get();
+		Mondo m = rigioca(n);
+		Stanza qui = m.getPosizione();
+		List<Nodo> figli = new ArrayList<>();
+		boolean sporca = false;
+		for(Mossa mossa : mosse(m))
+		{
+			if(vincente.get() != null) break;
+			if(visitati.size() >= limite) { interrotta = true; break; }
+			if(sporca)
+			{
+				m = rigioca(n);
+				qui = m.getPosizione();
+				sporca = false;
+			}
+			boolean valida = true;
+			try { esegui(g, m, mossa); }
+			catch(RuntimeException e) { valida = false; }
+
+			Nodo figlio = new Nodo(n, mossa, stato(m));
+			if(valida && m.getPlayer().haVinto()) { vincente.compareAndSet(null, figlio); break; }
+			if(Arrays.equals(figlio.stato.bit, n.stato.bit)) { m.setPosizione(qui); continue; }
+			sporca = true;
+			if(!valida) continue;
+			boolean nuovo = visitati.add(figlio.stato);
+			if(mossa.presa) return nuovo ? List.of(figlio) : List.of();
+			if(nuovo) figli.add(figlio);
+		}
+		return figli;
+	}
+
+	/*
+	 * Metodo che elenca le mosse possibili in uno stato, sugli elementi rilevanti che si trovano in stanze raggiungibili:
+	 * prima gli oggetti e gli animali da prendere, poi aprire, usare, rompere, parlare e dare.
+	 * Gli oggetti tenuti sono provati solo nelle mosse permesse dalle loro capacit (es si usano su un link solo quelli che aprono).
+	 *
+	 * @param	m	la partita nello stato da espandere
+	 * @return		le mosse da provare
+	 */
+	private List<Mossa> mosse(Mondo m)
+	{
+		Stanza qui = m.getPosizione();
+		Giocatore player = m.getPlayer();
+		List<String> tenuti = new ArrayList<>(), utensili = new ArrayList<>(), apritori = new ArrayList<>();
+		for(String nome : oggetti)
+		{
+			Inventario t = player.getItem(nome);
+			if(t == null) continue;
+			tenuti.add(nome);
+			if((t.getCapacita() & Capacita.UTENSILE) != 0) utensili.add(nome);
+			if((t.getCapacita() & Capacita.APRITORE) != 0) apritori.add(nome);
+		}
+		List<Mossa> prese = new ArrayList<>(), altre = new ArrayList<>();
+
+		for(String nome : oggetti)
+		{
+			Oggetto o = m.getItem(nome);
+			Stanza s = m.getObjLocation(nome);
+			if(player.getItem(nome) != null || s == null || !o.isVisibile() || !m.isRaggiungibile(qui, s)) continue;
+			if((o.getCapacita() & Capacita.RACCOGLIBILE) != 0) prese.add(new Mossa(s, "prendi "+nome, true));
+			if((o.getCapacita() & Capacita.CONTENITORE) != 0) altre.add(new Mossa(s, "apri "+nome, false));
+			for(String t : utensili)
+			{
+				altre.add(new Mossa(s, "usa "+t+" su "+nome, false));
+				altre.add(new Mossa(s, "rompi "+nome+" con "+t, false));
+			}
+		}
+		for(String nome : personaggi)
+		{
+			Character c = m.getCharacter(nome);
+			Stanza s = m.getCharacterLocation(nome);
+			if(player.getItem(nome) != null || s == null || !m.isRaggiungibile(qui, s)) continue;
+			if((c.getCapacita() & Capacita.RACCOGLIBILE) != 0) prese.add(new Mossa(s, "prendi "+nome, true));
+			altre.add(new Mossa(s, "parla con "+nome, false));
+			if((c.getCapacita() & Capacita.PERSONA) == 0) continue;
+			for(String t : tenuti) altre.add(new Mossa(s, "dai "+t+" a "+nome, false));
+			for(String t : personaggi) if(player.getItem(t) != null) altre.add(new Mossa(s, "dai "+t+" a "+nome, false));
+		}
+		for(String nome : links)
+		{
+			Link l = m.getLink(nome);
+			Stanza s = null;
+			for(String capo : new String[] { l.getPartenza(), l.getArrivo() })
+				if(s == null && capo != null && m.getStanza(capo) != null && m.isRaggiungibile(qui, m.getStanza(capo))) s = m.getStanza(capo);
+			if(s == null) continue;
+			if(l.getChiusa())
+			{
+				altre.add(new Mossa(s, "apri "+nome, false));
+				for(String t : apritori) altre.add(new Mossa(s, "apri "+nome+" con "+t, false));
+			}
+			for(String t : apritori) altre.add(new Mossa(s, "usa "+t+" su "+nome, false));
+		}
+		prese.addAll(altre);
+		return prese;
+	}
+
+	/*
+	 * Metodo che crea una nuova partita del modello, senza output.
+	 */
+	private Mondo nuovaPartita()
+	{
+		Mondo m = modello.nuovaPartita();
+		m.setOutput(Uscita.NULLA);
+		return m;
+	}
+
+	/*
+	 * Metodo che ricrea la partita di uno stato rigiocando le mosse che lo hanno prodotto.
+	 *
+	 * @param	n	il nodo dello stato
+	 * @return		la partita nello stato del nodo
+	 */
+	private Mondo rigioca(Nodo n)
+	{
+		Deque<Mossa> mosse = new ArrayDeque<>();
+		for(Nodo p = n; p.mossa != null; p = p.padre) mosse.push(p.mossa);
+		Mondo m = nuovaPartita();
+		Gioco g = giochi.get();
+		for(Mossa mossa : mosse) esegui(g, m, mossa);
+		return m;
+	}
+
+	/*
+	 * Metodo che esegue una mossa: porta il giocatore nella stanza della mossa ed esegue il comando.
+	 */
+	private static void esegui(Gioco g, Mondo m, Mossa mossa)
+	{
+		m.setPosizione(m.getStanza(mossa.stanza));
+		g.leggiComando(mossa.comando.toLowerCase(), m);
+	}
+
+	/*
+	 * Metodo che codifica lo stato di una partita.
+	 *
+	 * @param	m	la partita
+	 * @return		lo stato della partita
+	 */
+	private Stato stato(Mondo m)
+	{
+		long[] bit = new long[(bitStato + 63) / 64];
+		Giocatore player = m.getPlayer();
+		int i = 0;
+		for(String nome : oggetti)
+		{
+			Oggetto o = m.getItem(nome);
+			i = scrivi(bit, i, player.getItem(nome) != null ? 1 : luogo(m.getObjLocation(nome)), bitStanza);
+			i = scrivi(bit, i, o.isVisibile() ? 1 : 0, 1);
+			i = scrivi(bit, i, variante(nome+"\0"+o.guarda()), BIT_VARIANTE);
+		}
+		for(String nome : personaggi)
+		{
+			i = scrivi(bit, i, player.getItem(nome) != null ? 1 : luogo(m.getCharacterLocation(nome)), bitStanza);
+			i = scrivi(bit, i, m.getCharacter(nome).isTranquillo() ? 1 : 0, 1);
+		}
+		for(String nome : links)
+		{
+			Link l = m.getLink(nome);
+			i = scrivi(bit, i, l.getChiusa() ? 1 : 0, 1);
+			i = scrivi(bit, i, l.getUtil().isEmpty() ? 1 : 0, 1);
+		}
+		return new Stato(m.getPosizione().getId(), bit);
+	}
+
+	/*
+	 * Metodo che codifica il luogo di un elemento: 0 se non  in nessuna stanza, il numero della stanza piu 2 altrimenti
+	 * (1 indica l'inventario del giocatore).
+	 */
+	private static int luogo(Stanza s) { return (s == null) ? 0 : s.getId() + 2; }
+
+	/*
+	 * Metodo che assegna un numero a un aspetto di un oggetto, la prima volta che viene incontrato.
+	 */
+	private int variante(String aspetto)
+	{
+		int v = varianti.computeIfAbsent(aspetto, a -> nuovaVariante.getAndIncrement());
+		if(v >= 1 << BIT_VARIANTE) throw new IllegalStateException("Troppi aspetti diversi degli oggetti");
+		return v;
+	}
+
+	/*
+	 * Metodo che scrive un valore nell'array di bit.
+	 *
+	 * @param	bit			l'array di bit
+	 * @param	posizione	il primo bit da scrivere
+	 * @param	valore		il valore
+	 * @param	lunghezza	il numero di bit del valore
+	 * @return				il bit seguente
+	 */
+	private static int scrivi(long[] bit, int posizione, int valore, int lunghezza)
+	{
+		for(int b = 0; b < lunghezza; b++) if((valore >>> b & 1) != 0) bit[(posizione + b) >>> 6] |= 1L << (posizione + b);
+		return posizione + lunghezza;
+	}
+
+	/*
+	 * Metodo che trasforma il percorso di un nodo in un copione .ff, aggiungendo un "vai a" per ogni cambio di stanza.
+	 */
+	private List<String> copione(Nodo n)
+	{
+		Deque<Nodo> passi = new ArrayDeque<>();
+		for(Nodo p = n; p.mossa != null; p = p.padre) passi.push(p);
+		List<String> comandi = new ArrayList<>();
+		String qui = modello.getGrafo().getNome(passi.isEmpty() ? n.stato.posizione : passi.peek().padre.stato.posizione);
+		for(Nodo p : passi)
+		{
+			if(!p.mossa.stanza.equalsIgnoreCase(qui)) comandi.add("vai a "+p.mossa.stanza);
+			comandi.add(p.mossa.comando);
+			qui = modello.getGrafo().getNome(p.stato.posizione);
+		}
+		return comandi;
+	}
+
+	/*
+	 * Metodo che gioca il copione trovato su una nuova partita e controlla che vinca.
+	 */
+	private boolean verifica(List<String> copione)
+	{
+		Mondo m = nuovaPartita();
+		Gioco g = new Gioco();
+		for(String comando : copione) g.leggiComando(comando.toLowerCase(), m);
+		return m.getPlayer().haVinto();
+	}
+
+	/*
+	 * Metodo che normalizza un nome come fanno gli indici del mondo.
+	 */
+	private static String chiave(String nome) { return nome.toLowerCase(); }
+
+	/*
+	 * Classe che rappresenta uno stato codificato: la stanza del giocatore e l'array di bit degli elementi.
+	 */
+	private static final class Stato
+	{
+		private final int posizione;
+		private final long[] bit;
+		private final int hash;
+
+		private Stato(int posizione, long[] bit) { this.posizione = posizione; this.bit = bit; this.hash = 31 * posizione + Arrays.hashCode(bit); }
+
+		@Override
+		public boolean equals(Object o) { return o instanceof Stato s && s.posizione == posizione && Arrays.equals(s.bit, bit); }
+
+		@Override
+		public int hashCode() { return hash; }
+	}
+
+	/*
+	 * Classe che rappresenta una mossa: un comando da eseguire in una stanza.
+	 */
+	private static final class Mossa
+	{
+		private final String stanza;
+		private final String comando;
+		private final boolean presa;
+
+		private Mossa(Stanza stanza, String comando, boolean presa) { this.stanza = stanza.getName(); this.comando = comando; this.presa = presa; }
+	}
+
+	/*
+	 * Classe che rappresenta un nodo della ricerca: lo stato, la mossa che lo ha prodotto e il nodo di partenza.
+	 */
+	private static final class Nodo
+	{
+		private final Nodo padre;
+		private final Mossa mossa;
+		private final Stato stato;
+
+		private Nodo(Nodo padre, Mossa mossa, Stato stato) { this.padre = padre; this.mossa = mossa; this.stato = stato; }
+	}
+
+	/*
+	 * Classe che rappresenta l'esito della ricerca.
+	 */
+	public static class Esito
+	{
+		private final List<String> soluzione;
+		private final boolean interrotta;
+		private final int stati;
+		private final long durata;
+
+		private Esito(List<String> soluzione, boolean interrotta, int stati, long durata)
+		{
+			this.soluzione = soluzione;
+			this.interrotta = interrotta;
+			this.stati = stati;
+			this.durata = durata;
+		}
+
+		/*
+		 * Getter della soluzione, null se non  stata trovata
+		 */
+		public List<String> getSoluzione() { return soluzione; }
+
+		/*
+		 * Getter che dice se la ricerca si  fermata al limite di stati senza esaurirli
+		 */
+		public boolean isInterrotta() { return interrotta; }
+
+		public int getStati() { return stati; }
+
+		public long getDurata() { return durata; }
+
+		@Override
+		public String toString()
+		{
+			String risultato = (soluzione != null) ? "risolto in "+soluzione.size()+" comandi" : interrotta ? "limite di stati raggiunto" : "nessuna soluzione";
+			return String.format("%s, %d stati in %.3f s", risultato, stati, durata / 1e9);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package it.uniroma1.textadv;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +18,11 @@ public class Stanza {
 	private List<Oggetto> items = new ArrayList<>();
 	private List<Character> characters = new ArrayList<>();
 	private Map<Direzione, Link> links = new HashMap<>();
+	private Mondo mondo;
+	private int id = Grafo.NESSUNA;
+	private Map<String, Oggetto> nomiOggetti;
+	private Map<String, Character> nomiPersonaggi;
+	private Map<String, Link> nomiLinks;
 
 	/*
 	 * Costruttore con visibilita di package per il builder pattern
@@ -41,12 +47,19 @@ public class Stanza {
 	 * 
 	 * @param item l'oggetto da aggiungere.
 	 */
-	public void addItem(Oggetto o) { items.add(o); }
+	public void addItem(Oggetto o) { items.add(o); nomiOggetti = null; if(mondo != null) mondo.spostaOggetto(o, this); }
+	
+	/*
+	 * Metodo per rimuovere oggetti dalla stanza.
+	 * 
+	 * @param	o	l'oggetto da rimuovere.
+	 */
+	public void removeItem(Oggetto o) { items.remove(o); nomiOggetti = null; if(mondo != null) mondo.rimuoviOggetto(o, this); }
 	
 	/*
 	 * Getter per i personaggi presenti nella stanza.
 	 */
-	public List<Character> getCharacters() { return characters; }
+	public List<Character> getCharacters() { return Collections.unmodifiableList(characters); }
 	
 	/*
 	 * Getter di un personaggio dal nome.
@@ -54,7 +67,7 @@ public class Stanza {
 	 * @param	nome	nome del personaggio cercato
 	 * @return			il personaggio cercato se  nella stanza se non  presente null.
 	 */
-	public Character getCharacter(String nome) { for(Character p : getCharacters()) if(p.getNome().toLowerCase().equals(nome)) return p; return null; }
+	public Character getCharacter(String nome) { return nomiPersonaggi().get(nome.toLowerCase()); }
 	
 	/*
 	 * Getter per la descrizione della stanza.
@@ -62,17 +75,39 @@ public class Stanza {
 	public String getDescription() { return description; }
 	
 	/*
-	 * Getter di un oggetto dal nome.
+	 * Getter di un oggetto dal nome esatto.
 	 * 
 	 * @param	nome	nome del oggetto cercato
 	 * @return			l'oggetto cercato se  nella stanza se non  presente null.
 	 */
-	public Oggetto getItem(String nome) { for(Oggetto o : getItems()) if(o.getNome().contains(nome)) return o; return null; }
+	public Oggetto getItem(String nome) { return nomiOggetti().get(nome); }
 	
 	/*
 	 * Getter per gli oggetti della stanza.
 	 */
-	public List<Oggetto> getItems() { return items; }
+	public List<Oggetto> getItems() { return Collections.unmodifiableList(items); }
+	
+	/*
+	 * Getter di un oggetto visibile dal nome esatto.
+	 * 
+	 * @param	nome	nome dell'oggetto cercato
+	 * @return			l'oggetto cercato se  nella stanza ed  visibile, altrimenti null.
+	 */
+	public Oggetto getItemVisibile(String nome) 
+	{ 
+		Oggetto o = nomiOggetti().get(nome); 
+		return o != null && o.isVisibile() ? o : null; 
+	}
+	
+	/*
+	 * Getter dei nomi degli oggetti visibili nella stanza, nell'ordine in cui sono stati aggiunti.
+	 */
+	public List<String> getNomiVisibili() 
+	{ 
+		List<String> nomi = new ArrayList<>();
+		for(Oggetto o : items) if(o.isVisibile()) nomi.add(o.getNome());
+		return nomi;
+	}
 	
 	/*
 	 * Getter per il nome della stanza.
@@ -82,7 +117,7 @@ public class Stanza {
 	/*
 	 * Getter per le uscite della stanza.
 	 */
-	public Map<Direzione, Link> getLinks() { return links; }
+	public Map<Direzione, Link> getLinks() { return Collections.unmodifiableMap(links); }
 	
 	/*
 	 * Getter di un uscita dal nome.
@@ -90,7 +125,7 @@ public class Stanza {
 	 * @param	nome	nome dell'uscita cercata
 	 * @return			l'uscita cercata se  nella stanza se non  presente null.
 	 */
-	public Link getLink(String nome) { for(Link l : getLinks().values()) if(l.getNome().equals(nome)) return l; return null; }
+	public Link getLink(String nome) { return nomiLinks().get(nome.toLowerCase()); }
 	
 	/*
 	 * Getter di un uscita dalla direzione.
@@ -98,7 +133,68 @@ public class Stanza {
 	 * @param	d	direzione dell'uscita cercata
 	 * @return		l'uscita cercata se  nella stanza se non  presente null.
 	 */
-	public Link getLink(Direzione d) { for(Direzione l : getLinks().keySet()) if(l.equals(d)) return getLinks().get(l); return null; }
+	public Link getLink(Direzione d) { return links.get(d); }
+	
+	/*
+	 * Setter del mondo di cui fa parte la stanza, usato per tenere aggiornato l'indice delle posizioni.
+	 * 
+	 * @param	mondo	il mondo di gioco
+	 */
+	void setMondo(Mondo mondo) { this.mondo = mondo; }
+	
+	/*
+	 * Getter del numero della stanza nel grafo del mondo.
+	 */
+	int getId() { return id; }
+	
+	/*
+	 * Setter del numero della stanza nel grafo del mondo.
+	 */
+	void setId(int id) { this.id = id; }
+	
+	/*
+	 * Insieme dei nomi degli oggetti della stanza, ricostruito solo quando cambia il contenuto della stanza.
+	 * La visibilit viene controllata al momento della ricerca, cosi un oggetto che si nasconde non invalida l'indice.
+	 */
+	private Map<String, Oggetto> nomiOggetti()
+	{
+		if(nomiOggetti == null)
+		{
+			Map<String, Oggetto> nomi = new HashMap<>();
+			for(Oggetto o : items) nomi.putIfAbsent(o.getNome(), o);
+			nomiOggetti = nomi;
+		}
+		return nomiOggetti;
+	}
+	
+	/*
+	 * Insieme dei nomi (in minuscolo) dei personaggi della stanza, costruito alla prima richiesta:
+	 * i personaggi di una stanza non cambiano durante la partita.
+	 */
+	private Map<String, Character> nomiPersonaggi()
+	{
+		if(nomiPersonaggi == null)
+		{
+			Map<String, Character> nomi = new HashMap<>();
+			for(Character c : characters) if(c != null) nomi.putIfAbsent(c.getNome().toLowerCase(), c);
+			nomiPersonaggi = nomi;
+		}
+		return nomiPersonaggi;
+	}
+	
+	/*
+	 * Insieme dei nomi (in minuscolo) delle uscite della stanza, costruito alla prima richiesta.
+	 */
+	private Map<String, Link> nomiLinks()
+	{
+		if(nomiLinks == null)
+		{
+			Map<String, Link> nomi = new HashMap<>();
+			for(Link l : links.values()) nomi.putIfAbsent(l.getNome().toLowerCase(), l);
+			nomiLinks = nomi;
+		}
+		return nomiLinks;
+	}
 	
 	/*
 	 * Override del metodo toString.
@@ -113,11 +209,7 @@ public class Stanza {
 	 */
 	public Character getPersonaggioChiave()
 	{
-		for(Character c : getCharacters()) 
-		{
-			var string = c.getClass().toString();
-			if(string.equals("class it.uniroma1.textadv.Character$Venditore") || string.equals("class it.uniroma1.textadv.Character$Guardiano")) return c; 
-		}
+		for(Character c : getCharacters()) if((c.getCapacita() & Capacita.CHIAVE) != 0) return c; 
 		return null;
 	}
 }
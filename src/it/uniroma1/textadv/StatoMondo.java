@@ -0,0 +1,493 @@
+package it.uniroma1.textadv;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/*
+ * Classe che raccoglie in pochi array tutto lo stato mutabile di una partita: link, oggetti e personaggi
+ * non tengono piu i propri valori in dei campi, ma li leggono e li scrivono qui.
+ * Ogni link, oggetto e personaggio ha un numero, la sua riga nella definizione del mondo
+ * o, per gli elementi aggiunti a mano, l'ordine in cui  stato aggiunto.
+ * Per ogni elemento i bit dicono se un valore  diverso da quello con cui l'elemento  entrato nel mondo:
+ * per i link l'apertura, per gli oggetti la visibilit e lo stato proprio del tipo (una scrivania aperta, un camino spento,
+ * un secchio pieno), per i personaggi l'umore. Uno stato tutto a zero  quindi il mondo appena caricato,
+ * anche per gli elementi che una partita creata da un modello non ha ancora istanziato.
+ * Accanto ai bit, per ogni oggetto un intero dice dove si trova: il numero della stanza, {@link #INVENTARIO} o {@link #NESSUNA}.
+ * I pochi link il cui utensile cambia durante la partita (una botola svitata) hanno il nuovo utensile in un array a parte,
+ * creato solo al primo cambiamento.
+ * Una copia condivide gli array con lo stato da cui  stata fatta: i bit vengono copiati solo alla prima scrittura,
+ * mentre i luoghi restano condivisi e gli oggetti spostati dopo la copia sono tenuti in una piccola tabella a parte,
+ * finche non sono cosi tanti che conviene avere di nuovo un array proprio.
+ * Creare una partita da uno stato iniziale costa cosi quanto gli oggetti che sposta, non quanto gli oggetti del mondo.
+ *
+ * @author Valerio Mesiti
+ */
+public final class StatoMondo {
+
+	/*
+	 * Luogo di un oggetto che non  in nessuna stanza, come il contenuto di un contenitore chiuso.
+	 */
+	public static final int NESSUNA = -1;
+
+	/*
+	 * Luogo di un oggetto raccolto dal giocatore.
+	 */
+	public static final int INVENTARIO = -2;
+
+	/*
+	 * Bit di un oggetto: la visibilit e lo stato proprio del tipo.
+	 */
+	static final int VISIBILE = 0, ATTIVO = 1;
+
+	private static final int BIT_OGGETTO = 2;
+
+	private long[] links;
+	private long[] oggetti;
+	private long[] personaggi;
+	private boolean bitCondivisi;
+	private int[] luoghi;
+	private boolean luoghiCondivisi;
+	private int[] spostati;
+	private int[] luoghiSpostati;
+	private int numeroSpostati;
+	private String[] utensili;
+	private int numeroLinks;
+	private int numeroOggetti;
+	private int numeroPersonaggi;
+	private int versioneLinks;
+
+	/*
+	 * Costruttore di uno stato iniziale, con tutti gli oggetti fuori dalle stanze.
+	 *
+	 * @param	links		il numero di link
+	 * @param	oggetti		il numero di oggetti
+	 * @param	personaggi	il numero di personaggi
+	 */
+	StatoMondo(int links, int oggetti, int personaggi)
+	{
+		this.links = new long[parole(links)];
+		this.oggetti = new long[parole(oggetti * BIT_OGGETTO)];
+		this.personaggi = new long[parole(personaggi)];
+		luoghi = new int[oggetti];
+		Arrays.fill(luoghi, NESSUNA);
+		numeroLinks = links;
+		numeroOggetti = oggetti;
+		numeroPersonaggi = personaggi;
+	}
+
+	/*
+	 * Costruttore di copia: i bit e i luoghi vengono condivisi con lo stato copiato, che deve averli gia segnati con {@link #condividi()}.
+	 * Lo stato copiato non viene toccato, cosi lo stato iniziale di un modello si pu copiare da piu thread insieme.
+	 */
+	private StatoMondo(StatoMondo s)
+	{
+		bitCondivisi = luoghiCondivisi = true;
+		links = s.links;
+		oggetti = s.oggetti;
+		personaggi = s.personaggi;
+		luoghi = s.luoghi;
+		if(s.numeroSpostati > 0)
+		{
+			spostati = s.spostati.clone();
+			luoghiSpostati = s.luoghiSpostati.clone();
+			numeroSpostati = s.numeroSpostati;
+		}
+		utensili = (s.utensili == null) ? null : s.utensili.clone();
+		numeroLinks = s.numeroLinks;
+		numeroOggetti = s.numeroOggetti;
+		numeroPersonaggi = s.numeroPersonaggi;
+	}
+
+	/*
+	 * Metodo che segna i bit e i luoghi dello stato come condivisi: da qui in poi lo stato li copia prima di modificarli.
+	 * Va chiamato da chi possiede lo stato, prima di copiarlo.
+	 */
+	void condividi() { bitCondivisi = luoghiCondivisi = true; }
+
+	/*
+	 * Metodo che copia lo stato, che deve essere stato condiviso con {@link #condividi()}:
+	 * la copia non risente delle modifiche successive della partita.
+	 */
+	public StatoMondo copia() { return new StatoMondo(this); }
+
+	/*
+	 * Metodo che aggiunge un link allo stato.
+	 *
+	 * @return	il numero del nuovo link
+	 */
+	int nuovoLink()
+	{
+		bitPropri();
+		links = cresci(links, parole(numeroLinks + 1));
+		return numeroLinks++;
+	}
+
+	/*
+	 * Metodo che aggiunge un oggetto allo stato, fuori dalle stanze.
+	 *
+	 * @return	il numero del nuovo oggetto
+	 */
+	int nuovoOggetto()
+	{
+		bitPropri();
+		oggetti = cresci(oggetti, parole((numeroOggetti + 1) * BIT_OGGETTO));
+		luoghiPropri();
+		if(numeroOggetti == luoghi.length)
+		{
+			luoghi = Arrays.copyOf(luoghi, Math.max(8, luoghi.length * 2));
+			Arrays.fill(luoghi, numeroOggetti, luoghi.length, NESSUNA);
+		}
+		return numeroOggetti++;
+	}
+
+	/*
+	 * Metodo che aggiunge un personaggio allo stato.
+	 *
+	 * @return	il numero del nuovo personaggio
+	 */
+	int nuovoPersonaggio()
+	{
+		bitPropri();
+		personaggi = cresci(personaggi, parole(numeroPersonaggi + 1));
+		return numeroPersonaggi++;
+	}
+
+	/*
+	 * Metodo che dice se l'apertura di un link  cambiata; falso per i link che lo stato non conosce.
+	 *
+	 * @param	l	il numero del link
+	 */
+	boolean getLink(int l) { return l < numeroLinks && leggi(links, l); }
+
+	/*
+	 * Metodo che segna se l'apertura di un link  cambiata.
+	 *
+	 * @param	l			il numero del link
+	 * @param	cambiato	true se il link non  piu come all'inizio
+	 */
+	void setLink(int l, boolean cambiato)
+	{
+		if(leggi(links, l) == cambiato) return;
+		bitPropri();
+		scrivi(links, l, cambiato);
+		versioneLinks++;
+	}
+
+	/*
+	 * Metodo che dice se un bit di un oggetto  cambiato.
+	 *
+	 * @param	o	il numero dell'oggetto
+	 * @param	bit	{@link #VISIBILE} o {@link #ATTIVO}
+	 */
+	boolean getOggetto(int o, int bit) { return leggi(oggetti, o * BIT_OGGETTO + bit); }
+
+	/*
+	 * Metodo che segna se un bit di un oggetto  cambiato.
+	 *
+	 * @param	o			il numero dell'oggetto
+	 * @param	bit			{@link #VISIBILE} o {@link #ATTIVO}
+	 * @param	cambiato	true se il valore non  piu come all'inizio
+	 */
+	void setOggetto(int o, int bit, boolean cambiato) { if(leggi(oggetti, o * BIT_OGGETTO + bit) != cambiato) { bitPropri(); scrivi(oggetti, o * BIT_OGGETTO + bit, cambiato); } }
+
+	/*
+	 * Metodo che dice se l'umore di un personaggio  cambiato.
+	 *
+	 * @param	p	il numero del personaggio
+	 */
+	boolean getPersonaggio(int p) { return leggi(personaggi, p); }
+
+	/*
+	 * Metodo che segna se l'umore di un personaggio  cambiato.
+	 *
+	 * @param	p			il numero del personaggio
+	 * @param	cambiato	true se l'umore non  piu come all'inizio
+	 */
+	void setPersonaggio(int p, boolean cambiato) { if(leggi(personaggi, p) != cambiato) { bitPropri(); scrivi(personaggi, p, cambiato); } }
+
+	/*
+	 * Getter del luogo di un oggetto.
+	 *
+	 * @param	o	il numero dell'oggetto
+	 * @return		il numero della stanza, {@link #INVENTARIO} o {@link #NESSUNA}
+	 */
+	int getLuogo(int o)
+	{
+		if(numeroSpostati > 0)
+		{
+			int i = cercaSpostato(o);
+			if(spostati[i] != 0) return luoghiSpostati[i];
+		}
+		return luoghi[o];
+	}
+
+	/*
+	 * Setter del luogo di un oggetto.
+	 *
+	 * @param	o		il numero dell'oggetto
+	 * @param	luogo	il numero della stanza, {@link #INVENTARIO} o {@link #NESSUNA}
+	 */
+	void setLuogo(int o, int luogo)
+	{
+		if(!luoghiCondivisi) { luoghi[o] = luogo; return; }
+		if(numeroSpostati == 0 && luoghi[o] == luogo) return;
+		if(spostati == null) { spostati = new int[16]; luoghiSpostati = new int[16]; }
+		int i = cercaSpostato(o);
+		luoghiSpostati[i] = luogo;
+		if(spostati[i] != 0) return;
+		spostati[i] = o + 1;
+		if(++numeroSpostati > luoghi.length / 8) luoghiPropri();
+		else if(numeroSpostati * 2 > spostati.length) ingrandisciSpostati();
+	}
+
+	/*
+	 * Metodo che cerca un oggetto nella tabella degli spostati, con indirizzamento aperto.
+	 *
+	 * @param	o	il numero dell'oggetto
+	 * @return		la posizione dell'oggetto nella tabella o, se non c', la posizione libera in cui andrebbe
+	 */
+	private int cercaSpostato(int o)
+	{
+		int maschera = spostati.length - 1;
+		int h = o * 0x9E3779B9;
+		int i = (h ^ (h >>> 16)) & maschera;
+		while(spostati[i] != 0 && spostati[i] != o + 1) i = (i + 1) & maschera;
+		return i;
+	}
+
+	/*
+	 * Metodo che raddoppia la tabella degli spostati.
+	 */
+	private void ingrandisciSpostati()
+	{
+		int[] vecchi = spostati, vecchiLuoghi = luoghiSpostati;
+		spostati = new int[vecchi.length * 2];
+		luoghiSpostati = new int[vecchi.length * 2];
+		for(int i = 0; i < vecchi.length; i++)
+			if(vecchi[i] != 0)
+			{
+				int j = cercaSpostato(vecchi[i] - 1);
+				spostati[j] = vecchi[i];
+				luoghiSpostati[j] = vecchiLuoghi[i];
+			}
+	}
+
+	/*
+	 * Metodo che da allo stato un array dei luoghi tutto suo, con gli spostamenti gia applicati, se lo condivide con altri stati.
+	 */
+	private void luoghiPropri()
+	{
+		if(!luoghiCondivisi) return;
+		int[] propri = luoghi.clone();
+		for(int i = 0; numeroSpostati > 0 && i < spostati.length; i++) if(spostati[i] != 0) propri[spostati[i] - 1] = luoghiSpostati[i];
+		luoghi = propri;
+		luoghiCondivisi = false;
+		spostati = luoghiSpostati = null;
+		numeroSpostati = 0;
+	}
+
+	/*
+	 * Metodo che copia gli array di bit prima di scriverli, se lo stato li condivide con altri stati.
+	 */
+	private void bitPropri()
+	{
+		if(!bitCondivisi) return;
+		links = links.clone();
+		oggetti = oggetti.clone();
+		personaggi = personaggi.clone();
+		bitCondivisi = false;
+	}
+
+	/*
+	 * Getter dell'utensile che serve ad aprire un link.
+	 *
+	 * @param	l			il numero del link
+	 * @param	iniziale	l'utensile con cui il link  entrato nel mondo
+	 * @return				l'utensile cambiato durante la partita, altrimenti quello iniziale
+	 */
+	String getUtil(int l, String iniziale) { return (utensili == null || l >= utensili.length || utensili[l] == null) ? iniziale : utensili[l]; }
+
+	/*
+	 * Setter dell'utensile che serve ad aprire un link.
+	 *
+	 * @param	l		il numero del link
+	 * @param	util	il nuovo utensile, null se  tornato quello iniziale
+	 */
+	void setUtil(int l, String util)
+	{
+		if(utensili == null && util == null) return;
+		if(utensili == null || l >= utensili.length) utensili = Arrays.copyOf((utensili == null) ? new String[0] : utensili, Math.max(numeroLinks, l + 1));
+		utensili[l] = util;
+	}
+
+	/*
+	 * Metodo che scrive i cambiamenti dello stato rispetto all'inizio della partita: le sole parole di bit diverse da zero,
+	 * ognuna preceduta dalla sua posizione, e gli utensili cambiati. I luoghi degli oggetti li scrive chi salva la partita,
+	 * che conosce l'ordine degli oggetti nelle stanze.
+	 *
+	 * @param	out	il flusso su cui scrivere
+	 */
+	void scriviCambiamenti(DataOutput out) throws IOException
+	{
+		for(long[] bit : new long[][] { links, oggetti, personaggi })
+		{
+			int diverse = 0;
+			for(long parola : bit) if(parola != 0) diverse++;
+			out.writeInt(diverse);
+			for(int i = 0; i < bit.length; i++)
+				if(bit[i] != 0)
+				{
+					out.writeInt(i);
+					out.writeLong(bit[i]);
+				}
+		}
+		int cambiati = 0;
+		if(utensili != null) for(String u : utensili) if(u != null) cambiati++;
+		out.writeInt(cambiati);
+		for(int l = 0; cambiati > 0 && l < utensili.length; l++)
+			if(utensili[l] != null)
+			{
+				out.writeInt(l);
+				out.writeUTF(utensili[l]);
+			}
+	}
+
+	/*
+	 * Metodo che legge i cambiamenti scritti da {@link #scriviCambiamenti(DataOutput)} su uno stato appena creato.
+	 *
+	 * @param	in	il flusso da cui leggere
+	 */
+	void leggiCambiamenti(DataInput in) throws IOException
+	{
+		bitPropri();
+		for(long[] bit : new long[][] { links, oggetti, personaggi })
+			for(int n = in.readInt(); n > 0; n--)
+			{
+				int i = in.readInt();
+				if(i < 0 || i >= bit.length) throw new IOException("parola di stato fuori dal mondo: "+i);
+				bit[i] = in.readLong();
+			}
+		for(int n = in.readInt(); n > 0; n--)
+		{
+			int l = in.readInt();
+			if(l < 0 || l >= numeroLinks) throw new IOException("link fuori dal mondo: "+l);
+			setUtil(l, in.readUTF());
+		}
+		versioneLinks++;
+	}
+
+	/*
+	 * Getter dei link la cui apertura  cambiata, come insieme di bit indicizzato dal numero del link.
+	 */
+	BitSet getLinks() { return BitSet.valueOf(links); }
+
+	/*
+	 * Getter della versione dei link, che cresce ogni volta che un link si apre o si chiude:
+	 * chi calcola qualcosa a partire dai link aperti sa cosi quando rifarlo.
+	 */
+	int getVersioneLinks() { return versioneLinks; }
+
+	/*
+	 * Getter del numero di link.
+	 */
+	public int getNumeroLinks() { return numeroLinks; }
+
+	/*
+	 * Getter del numero di oggetti.
+	 */
+	public int getNumeroOggetti() { return numeroOggetti; }
+
+	/*
+	 * Getter del numero di personaggi.
+	 */
+	public int getNumeroPersonaggi() { return numeroPersonaggi; }
+
+	/*
+	 * Due stati sono uguali se hanno gli stessi elementi con gli stessi valori.
+	 */
+	@Override
+	public boolean equals(Object o)
+	{
+		return o instanceof StatoMondo s && s.numeroLinks == numeroLinks && s.numeroOggetti == numeroOggetti && s.numeroPersonaggi == numeroPersonaggi
+			&& Arrays.equals(s.links, 0, parole(numeroLinks), links, 0, parole(numeroLinks))
+			&& Arrays.equals(s.oggetti, 0, parole(numeroOggetti * BIT_OGGETTO), oggetti, 0, parole(numeroOggetti * BIT_OGGETTO))
+			&& Arrays.equals(s.personaggi, 0, parole(numeroPersonaggi), personaggi, 0, parole(numeroPersonaggi))
+			&& luoghiUguali(s)
+			&& utensiliUguali(s);
+	}
+
+	/*
+	 * Metodo che confronta i luoghi degli oggetti di due stati con gli stessi oggetti.
+	 */
+	private boolean luoghiUguali(StatoMondo s)
+	{
+		if(numeroSpostati == 0 && s.numeroSpostati == 0) return Arrays.equals(s.luoghi, 0, numeroOggetti, luoghi, 0, numeroOggetti);
+		for(int o = 0; o < numeroOggetti; o++) if(getLuogo(o) != s.getLuogo(o)) return false;
+		return true;
+	}
+
+	/*
+	 * Metodo che confronta gli utensili cambiati di due stati con gli stessi link.
+	 */
+	private boolean utensiliUguali(StatoMondo s)
+	{
+		for(int l = 0; l < numeroLinks; l++) if(!Objects.equals(getUtil(l, null), s.getUtil(l, null))) return false;
+		return true;
+	}
+
+	/*
+	 * Override del metodo hashCode, coerente con {@link #equals(Object)}.
+	 */
+	@Override
+	public int hashCode()
+	{
+		int h = numeroLinks;
+		h = 31 * h + hash(links, parole(numeroLinks));
+		h = 31 * h + hash(oggetti, parole(numeroOggetti * BIT_OGGETTO));
+		h = 31 * h + hash(personaggi, parole(numeroPersonaggi));
+		for(int i = 0; i < numeroOggetti; i++) h = 31 * h + getLuogo(i);
+		if(utensili != null) for(int l = 0; l < utensili.length; l++) if(utensili[l] != null) h += l ^ utensili[l].hashCode();
+		return h;
+	}
+
+	/*
+	 * Metodo che calcola l'hash delle prime parole di un array di bit.
+	 */
+	private static int hash(long[] bit, int parole)
+	{
+		int h = 1;
+		for(int i = 0; i < parole; i++) h = 31 * h + Long.hashCode(bit[i]);
+		return h;
+	}
+
+	/*
+	 * Metodo che calcola quante parole da 64 bit servono per un certo numero di bit.
+	 */
+	private static int parole(int bit) { return (bit + 63) >>> 6; }
+
+	/*
+	 * Metodo che allunga un array di bit, raddoppiandolo, se  piu corto delle parole richieste.
+	 */
+	private static long[] cresci(long[] bit, int parole) { return (parole <= bit.length) ? bit : Arrays.copyOf(bit, Math.max(parole, bit.length * 2)); }
+
+	/*
+	 * Metodo che legge un bit.
+	 */
+	private static boolean leggi(long[] bit, int i) { return (bit[i >>> 6] & (1L << i)) != 0; }
+
+	/*
+	 * Metodo che scrive un bit.
+	 *
+	 * @return	true se il bit  cambiato
+	 */
+	private static boolean scrivi(long[] bit, int i, boolean valore)
+	{
+		long prima = bit[i >>> 6];
+		bit[i >>> 6] = valore ? prima | (1L << i) : prima & ~(1L << i);
+		return bit[i >>> 6] != prima;
+	}
+}
@@ -0,0 +1,142 @@
+package it.uniroma1.textadv;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Classe che spezza un comando in parole chiave, scartando gli articoli e le preposizioni.
+ * Le parole vengono salvate come posizioni (inizio e fine) nella stringa in input, dentro buffer che vengono
+ * riutilizzati tra un comando e l'altro: una volta raggiunta la dimensione di regime la tokenizzazione non alloca nulla.
+ * Le parole del vocabolario (verbi e direzioni) vengono restituite come costanti, le altre vengono create solo quando richieste.
+ * Non  thread-safe, ogni partita ha il proprio tokenizzatore.
+ * 
+ * @author Valerio Mesiti
+ */
+class Tokenizzatore extends AbstractList<String> {
+
+	private static final String SEPARATORI = " \t,.:;?!\"'";
+	private static final List<String> ARTICOLI = List.of("il","lo","la","i","gli","le");
+	private static final List<String> PREPOSIZIONI = List.of("a","da","in","con","per","tra","fra",
+															 "dello","della","dei","degli","delle",
+															 "al","allo","alla","ai","agli","alle",
+															 "dal","dallo","dalla","dagli","dalle",
+															 "nel","nello","nella","nei","negli","nelle",
+															 "col","coi","sul","sullo","sulla","sui","sugli","sulle");
+	
+	/*
+	 * Tabella hash ad indirizzamento aperto delle parole note: articoli e preposizioni (da scartare) e vocabolario.
+	 * L'hash  lo stesso di String.hashCode(), cosi pu essere calcolato direttamente sui caratteri dell'input.
+	 */
+	private final String[] parole;
+	private final boolean[] scarta;
+	private final int maschera;
+	
+	private String input = "";
+	private int[] inizio = new int[8];
+	private int[] fine = new int[8];
+	private String[] token = new String[8];
+	private int n;
+	
+	/*
+	 * Costruttore
+	 * 
+	 * @param	vocabolario	le parole che il motore si aspetta di trovare spesso (verbi, direzioni)
+	 */
+	Tokenizzatore(Collection<String> vocabolario)
+	{
+		int totale = ARTICOLI.size() + PREPOSIZIONI.size() + vocabolario.size();
+		int dimensione = Integer.highestOneBit(totale * 2 - 1) << 1;
+		parole = new String[dimensione];
+		scarta = new boolean[dimensione];
+		maschera = dimensione - 1;
+		for(String p : ARTICOLI) aggiungi(p, true);
+		for(String p : PREPOSIZIONI) aggiungi(p, true);
+		for(String p : vocabolario) aggiungi(p, false);
+	}
+	
+	/*
+	 * Metodo che inserisce una parola nella tabella delle parole note.
+	 */
+	private void aggiungi(String parola, boolean stop)
+	{
+		int i = parola.hashCode() & maschera;
+		while(parole[i] != null && !parole[i].equals(parola)) i = (i + 1) & maschera;
+		if(parole[i] == null) { parole[i] = parola; scarta[i] = stop; }
+	}
+	
+	/*
+	 * Metodo che cerca tra le parole note i caratteri dell'input compresi tra da (incluso) e a (escluso).
+	 * 
+	 * @return	la posizione della parola nella tabella, -1 se non  una parola nota
+	 */
+	private int cerca(int da, int a)
+	{
+		int h = 0;
+		for(int k = da; k < a; k++) h = 31 * h + input.charAt(k);
+		int lunghezza = a - da;
+		for(int i = h & maschera; parole[i] != null; i = (i + 1) & maschera) 
+			if(parole[i].length() == lunghezza && input.regionMatches(da, parole[i], 0, lunghezza)) return i;
+		return -1;
+	}
+	
+	private static boolean separatore(char c) { return SEPARATORI.indexOf(c) >= 0; }
+	
+	/*
+	 * Metodo che tokenizza un comando, sostituendo le parole del comando precedente.
+	 * 
+	 * @param	input	il comando inserito
+	 * @return			il numero di parole chiave trovate
+	 */
+	int tokenizza(String input)
+	{
+		this.input = input;
+		Arrays.fill(token, 0, n, null);
+		n = 0;
+		int i = 0, lunghezza = input.length();
+		while(i < lunghezza)
+		{
+			while(i < lunghezza && separatore(input.charAt(i))) i++;
+			int da = i;
+			while(i < lunghezza && !separatore(input.charAt(i))) i++;
+			if(da == i) break;
+			int j = cerca(da, i);
+			if(j >= 0 && scarta[j]) continue;
+			if(n == inizio.length) cresci();
+			inizio[n] = da;
+			fine[n] = i;
+			token[n] = j >= 0 ? parole[j] : null;
+			n++;
+		}
+		return n;
+	}
+	
+	/*
+	 * Metodo che raddoppia i buffer quando un comando ha piu parole di quelle viste finora.
+	 */
+	private void cresci()
+	{
+		inizio = Arrays.copyOf(inizio, n * 2);
+		fine = Arrays.copyOf(fine, n * 2);
+		token = Arrays.copyOf(token, n * 2);
+	}
+	
+	/*
+	 * Getter della i-esima parola chiave, creata al primo accesso se non  una parola nota.
+	 */
+	@Override
+	public String get(int i) 
+	{
+		Objects.checkIndex(i, n);
+		if(token[i] == null) token[i] = input.substring(inizio[i], fine[i]);
+		return token[i];
+	}
+	
+	/*
+	 * Getter del numero di parole chiave dell'ultimo comando.
+	 */
+	@Override
+	public int size() { return n; }
+}
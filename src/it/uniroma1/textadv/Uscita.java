@@ -0,0 +1,132 @@
+package it.uniroma1.textadv;
+
+import java.io.PrintStream;
+
+/*
+ * Interfaccia che identifica dove il motore scrive le risposte del gioco.
+ * Ogni mondo ha la propria uscita: il motore chiama flush() alla fine di ogni comando,
+ * le implementazioni decidono se e quando scrivere davvero sul flusso di destinazione.
+ * Le implementazioni non sono thread-safe, ogni partita usa la propria.
+ * 
+ * @author Valerio Mesiti
+ */
+public interface Uscita {
+	
+	/*
+	 * Uscita che scarta tutto, per le partite di cui non interessa l'output.
+	 */
+	Uscita NULLA = s -> {};
+	
+	/*
+	 * Metodo che scrive un testo.
+	 * 
+	 * @param	s	il testo da scrivere
+	 */
+	void print(String s);
+	
+	/*
+	 * Metodo che scrive un testo seguito da un a capo.
+	 * 
+	 * @param	s	il testo da scrivere
+	 */
+	default void println(String s) { print(s); println(); }
+	
+	/*
+	 * Metodo che scrive un a capo.
+	 */
+	default void println() { print(System.lineSeparator()); }
+	
+	/*
+	 * Metodo chiamato alla fine di ogni comando.
+	 */
+	default void flush() {}
+	
+	/*
+	 * Metodo che scrive tutto ci che  ancora in sospeso, chiamato alla fine della partita.
+	 */
+	default void chiudi() { flush(); }
+	
+	/*
+	 * Getter dell'uscita sulla console, che scrive subito ogni messaggio.
+	 */
+	static Uscita console() { return new Flusso(System.out); }
+	
+	/*
+	 * Classe che scrive subito ogni messaggio sul flusso di destinazione.
+	 */
+	public static class Flusso implements Uscita
+	{
+		private final PrintStream destinazione;
+		
+		public Flusso(PrintStream destinazione) { this.destinazione = destinazione; }
+		
+		@Override
+		public void print(String s) { destinazione.print(s); }
+		
+		@Override
+		public void println(String s) { destinazione.println(s); }
+		
+		@Override
+		public void flush() { destinazione.flush(); }
+	}
+	
+	/*
+	 * Classe che accumula in memoria le risposte di un comando e le scrive tutte insieme alla fine del comando,
+	 * con una sola scrittura (e un solo lock) sul flusso di destinazione.
+	 */
+	public static class Buffer implements Uscita
+	{
+		protected final StringBuilder testo = new StringBuilder();
+		private final PrintStream destinazione;
+		
+		public Buffer(PrintStream destinazione) { this.destinazione = destinazione; }
+		
+		@Override
+		public void print(String s) { testo.append(s); }
+		
+		@Override
+		public void flush() { scrivi(); }
+		
+		/*
+		 * Metodo che scrive sul flusso di destinazione il testo accumulato e svuota il buffer.
+		 */
+		protected void scrivi()
+		{
+			if(testo.length() == 0) return;
+			destinazione.append(testo);
+			destinazione.flush();
+			testo.setLength(0);
+		}
+	}
+	
+	/*
+	 * Classe che accumula le risposte di piu comandi e le scrive quando superano una soglia di caratteri
+	 * o alla chiusura della partita, per le esecuzioni senza giocatore in cui conta solo il risultato finale.
+	 */
+	public static class Lotto extends Buffer
+	{
+		private final int soglia;
+		
+		public Lotto(PrintStream destinazione, int soglia) { super(destinazione); this.soglia = soglia; }
+		
+		@Override
+		public void flush() { if(testo.length() >= soglia) scrivi(); }
+		
+		@Override
+		public void chiudi() { scrivi(); }
+	}
+	
+	/*
+	 * Classe che conserva in memoria tutte le risposte della partita, per leggerle alla fine.
+	 */
+	public static class Memoria implements Uscita
+	{
+		private final StringBuilder testo = new StringBuilder();
+		
+		@Override
+		public void print(String s) { testo.append(s); }
+		
+		@Override
+		public String toString() { return testo.toString(); }
+	}
+}